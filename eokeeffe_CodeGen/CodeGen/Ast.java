@@ -0,0 +1,549 @@
+
+import java.util.List;
+
+/**
+ * The abstract syntax tree built by the Parser.
+ *
+ * Identifiers are resolved to their Symbols while the tree is built, since
+ * that depends on the scopes the parser is in. Type checking and code
+ * generation are separate passes over the tree, see TypeChecker and
+ * CodeGenerator.
+ */
+public abstract class Ast {
+
+	public interface Visitor<R> {
+		R visit(Program node) throws ParserException;
+
+		R visit(Body node) throws ParserException;
+
+		R visit(ProcedureDeclaration node) throws ParserException;
+
+		R visit(ConstDeclaration node) throws ParserException;
+
+		R visit(VarDeclaration node) throws ParserException;
+
+		R visit(Assignment node) throws ParserException;
+
+		R visit(Input node) throws ParserException;
+
+		R visit(Output node) throws ParserException;
+
+		R visit(IfStatement node) throws ParserException;
+
+		R visit(WhileStatement node) throws ParserException;
+
+		R visit(ReturnStatement node) throws ParserException;
+
+		R visit(ProcedureStatement node) throws ParserException;
+
+		R visit(Selector node) throws ParserException;
+
+		R visit(Dereference node) throws ParserException;
+
+		R visit(NumberLiteral node) throws ParserException;
+
+		R visit(ProcedureCall node) throws ParserException;
+
+		R visit(BinaryExpression node) throws ParserException;
+	}
+
+	public abstract <R> R accept(Visitor<R> visitor) throws ParserException;
+
+	public abstract static class Declaration extends Ast {
+	}
+
+	public abstract static class Statement extends Ast {
+	}
+
+	public abstract static class Expression extends Ast {
+	}
+
+	// ---------- Program structure ----------
+	// program := declarations procedureDeclarations
+	// "main" "(" ")" "{" declarations statementSequnce "}"
+	public static class Program extends Ast {
+		private List<Declaration> declarations;
+		private List<ProcedureDeclaration> procedures;
+		private Body main;
+
+		public Program(List<Declaration> declarations,
+				List<ProcedureDeclaration> procedures, Body main) {
+			this.declarations = declarations;
+			this.procedures = procedures;
+			this.main = main;
+		}
+
+		public List<Declaration> getDeclarations() {
+			return declarations;
+		}
+
+		public List<ProcedureDeclaration> getProcedures() {
+			return procedures;
+		}
+
+		public Body getMain() {
+			return main;
+		}
+
+		@Override
+		public <R> R accept(Visitor<R> visitor) throws ParserException {
+			return visitor.visit(this);
+		}
+	}
+
+	// The "{" ... "}" of a procedure or of main, with the scope it declares
+	public static class Body extends Ast {
+		private SymbolTable scope;
+		private List<Declaration> declarations;
+		private List<ProcedureDeclaration> procedures;
+		private List<Statement> statements;
+
+		public Body(SymbolTable scope, List<Declaration> declarations,
+				List<ProcedureDeclaration> procedures, List<Statement> statements) {
+			this.scope = scope;
+			this.declarations = declarations;
+			this.procedures = procedures;
+			this.statements = statements;
+		}
+
+		public SymbolTable getScope() {
+			return scope;
+		}
+
+		public List<Declaration> getDeclarations() {
+			return declarations;
+		}
+
+		public List<ProcedureDeclaration> getProcedures() {
+			return procedures;
+		}
+
+		public List<Statement> getStatements() {
+			return statements;
+		}
+
+		@Override
+		public <R> R accept(Visitor<R> visitor) throws ParserException {
+			return visitor.visit(this);
+		}
+	}
+
+	// ---------- Declarations ----------
+	// retType IDENT "(" [ procedureFormalParams ] ")" "{" body "}"
+	public static class ProcedureDeclaration extends Declaration {
+		private Symbol procedure;
+		private Body body;
+
+		public ProcedureDeclaration(Symbol procedure, Body body) {
+			this.procedure = procedure;
+			this.body = body;
+		}
+
+		public Symbol getProcedure() {
+			return procedure;
+		}
+
+		public Body getBody() {
+			return body;
+		}
+
+		@Override
+		public <R> R accept(Visitor<R> visitor) throws ParserException {
+			return visitor.visit(this);
+		}
+	}
+
+	// "const" IDENT "=" NUMBER ";"
+	public static class ConstDeclaration extends Declaration {
+		private Symbol symbol;
+		private Token number;
+
+		public ConstDeclaration(Symbol symbol, Token number) {
+			this.symbol = symbol;
+			this.number = number;
+		}
+
+		public Symbol getSymbol() {
+			return symbol;
+		}
+
+		public Token getNumber() {
+			return number;
+		}
+
+		@Override
+		public <R> R accept(Visitor<R> visitor) throws ParserException {
+			return visitor.visit(this);
+		}
+	}
+
+	// "var" IDENT { "," IDENT } ":" type ";"
+	public static class VarDeclaration extends Declaration {
+		private List<Symbol> symbols;
+
+		public VarDeclaration(List<Symbol> symbols) {
+			this.symbols = symbols;
+		}
+
+		public List<Symbol> getSymbols() {
+			return symbols;
+		}
+
+		@Override
+		public <R> R accept(Visitor<R> visitor) throws ParserException {
+			return visitor.visit(this);
+		}
+	}
+
+	// ---------- Statements ----------
+	// assignment := selector "=" ( expression | string_literal ) ";"
+	public static class Assignment extends Statement {
+		private Selector target;
+		private Token op;
+		private Expression value;
+		private Token literal;
+
+		public Assignment(Selector target, Token op, Expression value) {
+			this.target = target;
+			this.op = op;
+			this.value = value;
+		}
+
+		public Assignment(Selector target, Token op, Token literal) {
+			this.target = target;
+			this.op = op;
+			this.literal = literal;
+		}
+
+		public Selector getTarget() {
+			return target;
+		}
+
+		public Token getOp() {
+			return op;
+		}
+
+		// null if a string literal is assigned
+		public Expression getValue() {
+			return value;
+		}
+
+		// null if an expression is assigned
+		public Token getLiteral() {
+			return literal;
+		}
+
+		@Override
+		public <R> R accept(Visitor<R> visitor) throws ParserException {
+			return visitor.visit(this);
+		}
+	}
+
+	// input := "input" "(" parameters ")" ";"
+	public static class Input extends Statement {
+		private Token keyword;
+		private List<Symbol> parameters;
+
+		public Input(Token keyword, List<Symbol> parameters) {
+			this.keyword = keyword;
+			this.parameters = parameters;
+		}
+
+		public Token getKeyword() {
+			return keyword;
+		}
+
+		public List<Symbol> getParameters() {
+			return parameters;
+		}
+
+		@Override
+		public <R> R accept(Visitor<R> visitor) throws ParserException {
+			return visitor.visit(this);
+		}
+	}
+
+	// output := "print" "(" parameters ")" ";"
+	public static class Output extends Statement {
+		private Token keyword;
+		private List<Symbol> parameters;
+
+		public Output(Token keyword, List<Symbol> parameters) {
+			this.keyword = keyword;
+			this.parameters = parameters;
+		}
+
+		public Token getKeyword() {
+			return keyword;
+		}
+
+		public List<Symbol> getParameters() {
+			return parameters;
+		}
+
+		@Override
+		public <R> R accept(Visitor<R> visitor) throws ParserException {
+			return visitor.visit(this);
+		}
+	}
+
+	// ifStatement := "if" condition "{" statementSequence "}"
+	// [ "else" "{" statementSequence "}" ]
+	public static class IfStatement extends Statement {
+		private Condition condition;
+		private List<Statement> thenStatements;
+		private List<Statement> elseStatements;
+
+		public IfStatement(Condition condition, List<Statement> thenStatements,
+				List<Statement> elseStatements) {
+			this.condition = condition;
+			this.thenStatements = thenStatements;
+			this.elseStatements = elseStatements;
+		}
+
+		public Condition getCondition() {
+			return condition;
+		}
+
+		public List<Statement> getThenStatements() {
+			return thenStatements;
+		}
+
+		// null if there is no else
+		public List<Statement> getElseStatements() {
+			return elseStatements;
+		}
+
+		@Override
+		public <R> R accept(Visitor<R> visitor) throws ParserException {
+			return visitor.visit(this);
+		}
+	}
+
+	// whileStatement := "while" condition "{" statementSequence "}"
+	public static class WhileStatement extends Statement {
+		private Condition condition;
+		private List<Statement> statements;
+
+		public WhileStatement(Condition condition, List<Statement> statements) {
+			this.condition = condition;
+			this.statements = statements;
+		}
+
+		public Condition getCondition() {
+			return condition;
+		}
+
+		public List<Statement> getStatements() {
+			return statements;
+		}
+
+		@Override
+		public <R> R accept(Visitor<R> visitor) throws ParserException {
+			return visitor.visit(this);
+		}
+	}
+
+	// returnStatement := "return" expression ";"
+	public static class ReturnStatement extends Statement {
+		private Symbol procedure;
+		private Token keyword;
+		private Expression value;
+
+		public ReturnStatement(Symbol procedure, Token keyword, Expression value) {
+			this.procedure = procedure;
+			this.keyword = keyword;
+			this.value = value;
+		}
+
+		// the procedure returned from, null in main
+		public Symbol getProcedure() {
+			return procedure;
+		}
+
+		public Token getKeyword() {
+			return keyword;
+		}
+
+		public Expression getValue() {
+			return value;
+		}
+
+		@Override
+		public <R> R accept(Visitor<R> visitor) throws ParserException {
+			return visitor.visit(this);
+		}
+	}
+
+	// procedureStatement := procedureCall ";"
+	public static class ProcedureStatement extends Statement {
+		private ProcedureCall call;
+
+		public ProcedureStatement(ProcedureCall call) {
+			this.call = call;
+		}
+
+		public ProcedureCall getCall() {
+			return call;
+		}
+
+		@Override
+		public <R> R accept(Visitor<R> visitor) throws ParserException {
+			return visitor.visit(this);
+		}
+	}
+
+	// condition := "(" expression relop expression ")"
+	// Only ever visited as part of its if or while statement.
+	public static class Condition {
+		private Expression lhs;
+		private Token op;
+		private Expression rhs;
+
+		public Condition(Expression lhs, Token op, Expression rhs) {
+			this.lhs = lhs;
+			this.op = op;
+			this.rhs = rhs;
+		}
+
+		public Expression getLhs() {
+			return lhs;
+		}
+
+		public Token getOp() {
+			return op;
+		}
+
+		public Expression getRhs() {
+			return rhs;
+		}
+	}
+
+	// ---------- Expressions ----------
+	// selector := IDENT { "[" expression "]" }
+	// The address of the selected variable.
+	public static class Selector extends Expression {
+		private Token ident;
+		private Symbol symbol;
+		private List<Expression> indices;
+
+		public Selector(Token ident, Symbol symbol, List<Expression> indices) {
+			this.ident = ident;
+			this.symbol = symbol;
+			this.indices = indices;
+		}
+
+		public Token getIdent() {
+			return ident;
+		}
+
+		public Symbol getSymbol() {
+			return symbol;
+		}
+
+		public List<Expression> getIndices() {
+			return indices;
+		}
+
+		@Override
+		public <R> R accept(Visitor<R> visitor) throws ParserException {
+			return visitor.visit(this);
+		}
+	}
+
+	// The value of a selector used as a factor
+	public static class Dereference extends Expression {
+		private Selector selector;
+
+		public Dereference(Selector selector) {
+			this.selector = selector;
+		}
+
+		public Selector getSelector() {
+			return selector;
+		}
+
+		@Override
+		public <R> R accept(Visitor<R> visitor) throws ParserException {
+			return visitor.visit(this);
+		}
+	}
+
+	public static class NumberLiteral extends Expression {
+		private Token number;
+
+		public NumberLiteral(Token number) {
+			this.number = number;
+		}
+
+		public Token getNumber() {
+			return number;
+		}
+
+		@Override
+		public <R> R accept(Visitor<R> visitor) throws ParserException {
+			return visitor.visit(this);
+		}
+	}
+
+	// procedureCall := "::" IDENT "(" [ parameters ] ")"
+	public static class ProcedureCall extends Expression {
+		private Token ident;
+		private Symbol procedure;
+		private List<Symbol> arguments;
+
+		public ProcedureCall(Token ident, Symbol procedure, List<Symbol> arguments) {
+			this.ident = ident;
+			this.procedure = procedure;
+			this.arguments = arguments;
+		}
+
+		public Token getIdent() {
+			return ident;
+		}
+
+		public Symbol getProcedure() {
+			return procedure;
+		}
+
+		// empty if the call has no parameters
+		public List<Symbol> getArguments() {
+			return arguments;
+		}
+
+		@Override
+		public <R> R accept(Visitor<R> visitor) throws ParserException {
+			return visitor.visit(this);
+		}
+	}
+
+	// term op1 term or expression op2 expression, built left to right
+	public static class BinaryExpression extends Expression {
+		private Expression lhs;
+		private Token op;
+		private Expression rhs;
+
+		public BinaryExpression(Expression lhs, Token op, Expression rhs) {
+			this.lhs = lhs;
+			this.op = op;
+			this.rhs = rhs;
+		}
+
+		public Expression getLhs() {
+			return lhs;
+		}
+
+		public Token getOp() {
+			return op;
+		}
+
+		public Expression getRhs() {
+			return rhs;
+		}
+
+		@Override
+		public <R> R accept(Visitor<R> visitor) throws ParserException {
+			return visitor.visit(this);
+		}
+	}
+}
@@ -0,0 +1,335 @@
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+/**
+ * A program's tree packed into parallel primitive arrays, built by the
+ * Parser as it parses when compact trees are on. The passes then run over
+ * the nodes instead of over Ast objects, so parsing costs a few array
+ * growths instead of an object per node.
+ *
+ * Node n is described by its kind, its first child and next sibling (-1 ==
+ * none), an int of data and the index of the token it was built from in the
+ * program's TokenBuffer (-1 == none). For the kinds that refer to a Symbol
+ * the data is an index into a table of the distinct symbols, and for a BODY
+ * it is an index into a table of scopes. Nodes are added as they are
+ * parsed, so walking the tree reads the arrays mostly front to back; the
+ * first operand of a BINARY, CONDITION or ASSIGNMENT is moved to the end
+ * when its operator is reached, and the new node takes its place.
+ *
+ * The layout of the children of each kind is:
+ *   PROGRAM              declarations, PROCEDUREs, the BODY of main
+ *   BODY                 declarations, PROCEDUREs, statements
+ *   PROCEDURE            BODY
+ *   VAR                  NAMEs
+ *   ASSIGNMENT           SELECTOR, expression or STRING_LITERAL
+ *   INPUT, OUTPUT, CALL  NAMEs
+ *   IF                   CONDITION, BLOCK [, BLOCK]
+ *   WHILE                CONDITION, BLOCK
+ *   BLOCK                statements
+ *   RETURN               expression
+ *   PROCEDURE_STATEMENT  CALL
+ *   CONDITION, BINARY    lhs, rhs
+ *   SELECTOR             index expressions
+ *   DEREFERENCE          SELECTOR
+ */
+public class AstArena {
+
+  // ---------- Node kinds ----------
+  public static final int PROGRAM = 0;
+  public static final int BODY = 1;
+  public static final int PROCEDURE = 2;
+  public static final int CONST = 3;
+  public static final int VAR = 4;
+  public static final int NAME = 5;
+  public static final int ASSIGNMENT = 6;
+  public static final int INPUT = 7;
+  public static final int OUTPUT = 8;
+  public static final int IF = 9;
+  public static final int WHILE = 10;
+  public static final int BLOCK = 11;
+  public static final int RETURN = 12;
+  public static final int PROCEDURE_STATEMENT = 13;
+  public static final int CONDITION = 14;
+  public static final int SELECTOR = 15;
+  public static final int DEREFERENCE = 16;
+  public static final int NUMBER = 17;
+  public static final int STRING_LITERAL = 18;
+  public static final int CALL = 19;
+  public static final int BINARY = 20;
+
+  private final TokenBuffer tokenBuffer;
+
+  private byte[] kinds;
+  private int[] firstChildren;
+  private int[] nextSiblings;
+  private int[] data;
+  private int[] tokens;
+  private int size;
+
+  private Symbol[] symbols = new Symbol[16];
+  private int symbolCount;
+  private SymbolTable[] scopes = new SymbolTable[4];
+  private int scopeCount;
+
+  // Only used while building: the last child of each node, the nodes not
+  // closed yet and where each symbol is in the table
+  private int[] lastChildren;
+  private int[] open = new int[32];
+  private int openCount;
+  private IdentityHashMap<Symbol, Integer> symbolIndex = new IdentityHashMap<Symbol, Integer>();
+
+  /**
+   * An empty tree over the tokens of tokenBuffer, to be built with open(),
+   * add() and close().
+   */
+  AstArena(TokenBuffer tokenBuffer) {
+    this.tokenBuffer = tokenBuffer;
+    int capacity = 256;
+    kinds = new byte[capacity];
+    firstChildren = new int[capacity];
+    nextSiblings = new int[capacity];
+    lastChildren = new int[capacity];
+    data = new int[capacity];
+    tokens = new int[capacity];
+  }
+
+  public TokenBuffer getTokenBuffer() {
+    return tokenBuffer;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int getRoot() {
+    return 0;
+  }
+
+  // ---------- Accessors for node n ----------
+  public int getKind(int n) {
+    return kinds[n];
+  }
+
+  public int getFirstChild(int n) {
+    return firstChildren[n];
+  }
+
+  public int getNextSibling(int n) {
+    return nextSiblings[n];
+  }
+
+  public int getChild(int n, int i) {
+    int child = firstChildren[n];
+    while (i-- > 0 && child >= 0) child = nextSiblings[child];
+    return child;
+  }
+
+  public int getChildCount(int n) {
+    int count = 0;
+    for (int child = firstChildren[n]; child >= 0; child = nextSiblings[child]) count++;
+    return count;
+  }
+
+  public int getTokenIndex(int n) {
+    return tokens[n];
+  }
+
+  public TokenKind getTokenKind(int n) {
+    return tokenBuffer.getTokenKind(tokens[n]);
+  }
+
+  public String getLexeme(int n) {
+    return tokenBuffer.getLexeme(tokens[n]);
+  }
+
+  // A view on the token of node n, or null; made on each call, so only
+  // for reporting errors
+  public Token getToken(int n) {
+    return tokens[n] < 0 ? null : tokenBuffer.getToken(tokens[n]);
+  }
+
+  /**
+   * Returns the symbol of a PROCEDURE, CONST, NAME, SELECTOR or CALL node,
+   * or the procedure returned from by a RETURN (null in main).
+   */
+  public Symbol getSymbol(int n) {
+    return data[n] < 0 ? null : symbols[data[n]];
+  }
+
+  public SymbolTable getScope(int n) {
+    return scopes[data[n]];
+  }
+
+  // ---------- Typed accessors ----------
+  public int getMainBody() {
+    int body = firstChildren[0];
+    while (nextSiblings[body] >= 0) body = nextSiblings[body];
+    return body;
+  }
+
+  public int getLhs(int binaryOrCondition) {
+    return firstChildren[binaryOrCondition];
+  }
+
+  public int getRhs(int binaryOrCondition) {
+    return nextSiblings[firstChildren[binaryOrCondition]];
+  }
+
+  public int getCondition(int ifOrWhile) {
+    return firstChildren[ifOrWhile];
+  }
+
+  public int getThenBlock(int ifOrWhile) {
+    return nextSiblings[firstChildren[ifOrWhile]];
+  }
+
+  // -1 if the if has no else
+  public int getElseBlock(int ifStatement) {
+    return nextSiblings[getThenBlock(ifStatement)];
+  }
+
+  public int getTarget(int assignment) {
+    return firstChildren[assignment];
+  }
+
+  public int getValue(int assignmentOrReturn) {
+    int child = firstChildren[assignmentOrReturn];
+    return kinds[assignmentOrReturn] == ASSIGNMENT ? nextSiblings[child] : child;
+  }
+
+  public int getSelector(int dereference) {
+    return firstChildren[dereference];
+  }
+
+  public int getBody(int procedure) {
+    return firstChildren[procedure];
+  }
+
+  // ---------- Building ----------
+  /**
+   * Adds a node as the last child of the innermost open node and opens it,
+   * so the nodes added until it is closed become its children.
+   */
+  int open(int kind, int token) {
+    return open(kind, token, -1);
+  }
+
+  int open(int kind, int token, Symbol symbol) {
+    return open(kind, token, symbol(symbol));
+  }
+
+  int openBody(SymbolTable scope) {
+    if (scopeCount == scopes.length) scopes = Arrays.copyOf(scopes, scopeCount * 2);
+    scopes[scopeCount] = scope;
+    return open(BODY, -1, scopeCount++);
+  }
+
+  private int open(int kind, int token, int value) {
+    int n = add(kind, token, value);
+    if (openCount == open.length) open = Arrays.copyOf(open, openCount * 2);
+    open[openCount++] = n;
+    return n;
+  }
+
+  void close() {
+    openCount--;
+  }
+
+  // Adds a node with no children
+  int add(int kind, int token) {
+    return add(kind, token, -1);
+  }
+
+  int add(int kind, int token, Symbol symbol) {
+    return add(kind, token, symbol(symbol));
+  }
+
+  /**
+   * Opens a node in place of the last child of the innermost open node,
+   * with that child as its first child, for the operator of an expression
+   * or assignment reached after its first operand. The child is moved to
+   * the end, so the new node keeps the index the child had.
+   */
+  void wrapLast(int kind, int token) {
+    int child = lastChildren[open[openCount - 1]];
+    int moved = newNode(kind, token, -1);
+    kinds[moved] = kinds[child];
+    firstChildren[moved] = firstChildren[child];
+    lastChildren[moved] = lastChildren[child];
+    data[moved] = data[child];
+    tokens[moved] = tokens[child];
+    kinds[child] = (byte) kind;
+    firstChildren[child] = lastChildren[child] = moved;
+    data[child] = -1;
+    tokens[child] = token;
+    if (openCount == open.length) open = Arrays.copyOf(open, openCount * 2);
+    open[openCount++] = child;
+  }
+
+  /**
+   * Drops the nodes added since the tree had size nodes, such as those of
+   * a statement that turned out to be bad, along with the open ones.
+   */
+  void truncate(int size) {
+    while (openCount > 0 && open[openCount - 1] >= size) openCount--;
+    if (openCount > 0) {
+      int parent = open[openCount - 1];
+      int last = -1;
+      for (int child = firstChildren[parent]; child >= 0 && child < size; child = nextSiblings[child]) {
+        last = child;
+      }
+      if (last < 0) firstChildren[parent] = -1;
+      else nextSiblings[last] = -1;
+      lastChildren[parent] = last;
+    }
+    this.size = size;
+  }
+
+  // Drops what is only needed while building, once the root is closed
+  void finish() {
+    lastChildren = null;
+    open = null;
+    symbolIndex = null;
+  }
+
+  private int add(int kind, int token, int value) {
+    int n = newNode(kind, token, value);
+    if (openCount > 0) {
+      int parent = open[openCount - 1];
+      if (lastChildren[parent] < 0) firstChildren[parent] = n;
+      else nextSiblings[lastChildren[parent]] = n;
+      lastChildren[parent] = n;
+    }
+    return n;
+  }
+
+  private int newNode(int kind, int token, int value) {
+    if (size == kinds.length) {
+      int capacity = size * 2;
+      kinds = Arrays.copyOf(kinds, capacity);
+      firstChildren = Arrays.copyOf(firstChildren, capacity);
+      nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+      lastChildren = Arrays.copyOf(lastChildren, capacity);
+      data = Arrays.copyOf(data, capacity);
+      tokens = Arrays.copyOf(tokens, capacity);
+    }
+    kinds[size] = (byte) kind;
+    firstChildren[size] = nextSiblings[size] = lastChildren[size] = -1;
+    data[size] = value;
+    tokens[size] = token;
+    return size++;
+  }
+
+  private int symbol(Symbol symbol) {
+    if (symbol == null) return -1;
+    Integer index = symbolIndex.get(symbol);
+    if (index == null) {
+      if (symbolCount == symbols.length) symbols = Arrays.copyOf(symbols, symbolCount * 2);
+      symbols[symbolCount] = symbol;
+      index = symbolCount++;
+      symbolIndex.put(symbol, index);
+    }
+    return index;
+  }
+}
@@ -0,0 +1,342 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Compiles many source files at once on a pool of worker threads.
+ *
+ * The files to compile are given as a directory (every file in it whose name
+ * matches the -include glob), a glob such as tests/*.txt, a list file
+ * @files.lst with one path per line, or plain file names. The output of each
+ * foo.txt is written next to it as foo.s; of two files that would write the
+ * same output, the second fails. A throughput summary is printed at the end.
+ */
+public class BatchCompiler {
+
+  private static final String DEFAULT_INCLUDE = "*.{txt,tst}";
+  private static final long DEFAULT_CACHE_MEGABYTES = 256;
+
+  private int threads = Runtime.getRuntime().availableProcessors();
+  private boolean virtualThreads;
+  private String include = DEFAULT_INCLUDE;
+  private boolean quiet;
+  private boolean errorRecovery;
+  private CompilationCache cache;  // null == compile every file
+
+  // ---------- Options ----------
+  public void setThreads(int threads) {
+    this.threads = threads;
+  }
+
+  /**
+   * Runs each compile on its own virtual thread instead of a pool of
+   * platform threads. Needs a JVM that has them (Java 21 or later).
+   */
+  public void setVirtualThreads(boolean virtualThreads) {
+    this.virtualThreads = virtualThreads;
+  }
+
+  // the glob file names in a directory must match
+  public void setInclude(String include) {
+    this.include = include;
+  }
+
+  /**
+   * Takes unchanged files' outputs from cache instead of compiling them.
+   */
+  public void setCache(CompilationCache cache) {
+    this.cache = cache;
+  }
+
+  /**
+   * Reports every error of each file, see Compiler.setErrorRecovery(). A
+   * cache must be made with the same setting.
+   */
+  public void setErrorRecovery(boolean errorRecovery) {
+    this.errorRecovery = errorRecovery;
+  }
+
+  // don't report each file that fails to compile
+  public void setQuiet(boolean quiet) {
+    this.quiet = quiet;
+  }
+
+  // ---------- Collecting the files ----------
+  /**
+   * Returns the files named by a directory, glob, @list file or file name,
+   * in the order given and sorted within a directory or glob.
+   */
+  public List<Path> collect(List<String> args) throws IOException {
+    List<Path> files = new ArrayList<Path>();
+    for (String arg : args) {
+      if (arg.startsWith("@")) {
+        files.addAll(readList(arg.substring(1)));
+      } else if (firstWildcard(arg) >= 0) {
+        files.addAll(expandGlob(arg));
+      } else if (Files.isDirectory(Paths.get(arg))) {
+        files.addAll(listDirectory(Paths.get(arg)));
+      } else {
+        files.add(Paths.get(arg));
+      }
+    }
+    return files;
+  }
+
+  // -1 if arg is not a glob
+  private static int firstWildcard(String arg) {
+    for (int i = 0; i < arg.length(); i++) {
+      switch (arg.charAt(i)) {
+        case '*': case '?': case '[': case '{':
+          return i;
+      }
+    }
+    return -1;
+  }
+
+  private static List<Path> readList(String listFilename) throws IOException {
+    List<Path> files = new ArrayList<Path>();
+    BufferedReader in = new BufferedReader(new FileReader(listFilename));
+    try {
+      String line;
+      while ((line = in.readLine()) != null) {
+        line = line.trim();
+        if (line.length() > 0 && !line.startsWith("#")) files.add(Paths.get(line));
+      }
+    } finally {
+      in.close();
+    }
+    return files;
+  }
+
+  // Walks the directory the glob starts in, matching the rest of it against
+  // the paths below there, so tests/**/*.txt goes into subdirectories
+  private static List<Path> expandGlob(String glob) throws IOException {
+    String separator = FileSystems.getDefault().getSeparator();
+    int split = glob.lastIndexOf(separator, firstWildcard(glob));
+    Path root = split < 0 ? Paths.get(".") : Paths.get(split == 0 ? separator : glob.substring(0, split));
+    PathMatcher matcher = FileSystems.getDefault().getPathMatcher(
+        "glob:" + (split < 0 ? glob : glob.substring(split + 1)));
+
+    List<Path> files = new ArrayList<Path>();
+    Stream<Path> walk = Files.walk(root);
+    try {
+      walk.forEach(path -> {
+        if (Files.isRegularFile(path) && matcher.matches(root.relativize(path))) files.add(path);
+      });
+    } finally {
+      walk.close();
+    }
+    Collections.sort(files);
+    return files;
+  }
+
+  private List<Path> listDirectory(Path directory) throws IOException {
+    PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + include);
+    List<Path> files = new ArrayList<Path>();
+    Stream<Path> list = Files.list(directory);
+    try {
+      list.forEach(path -> {
+        if (Files.isRegularFile(path) && matcher.matches(path.getFileName())) files.add(path);
+      });
+    } finally {
+      list.close();
+    }
+    Collections.sort(files);
+    return files;
+  }
+
+  // ---------- Compiling ----------
+  // foo.txt -> foo.s, in the same directory
+  public static Path outputFile(Path source) {
+    String name = source.getFileName().toString();
+    int dot = name.lastIndexOf('.');
+    return source.resolveSibling((dot > 0 ? name.substring(0, dot) : name) + ".s");
+  }
+
+  // The outcome of compiling one file
+  private static class Result {
+    Path source;
+    int tokens;
+    String failure;  // null if the file compiled
+  }
+
+  private Result compile(Path source) {
+    Result result = new Result();
+    result.source = source;
+    try {
+      String output;
+      List<String> errors;
+      if (cache != null) {
+        CompilationCache.Result compiled = cache.compile(source.toString());
+        output = compiled.getOutput();
+        errors = compiled.getErrors();
+        result.tokens = compiled.getTokenCount();
+      } else {
+        Compiler compiler = new Compiler(source.toString());
+        compiler.setErrorRecovery(errorRecovery);
+        output = compiler.compile();
+        errors = compiler.getErrors();
+        result.tokens = compiler.getTokenCount();
+      }
+      if (!errors.isEmpty()) {
+        result.failure = errors.get(0);
+      }
+      Writer out = Files.newBufferedWriter(outputFile(source), Charset.defaultCharset());
+      try {
+        out.write(output);
+      } finally {
+        out.close();
+      }
+    } catch (IOException | RuntimeException | Error e) {
+      // a StackOverflowError on a deeply nested file fails that file only
+      result.failure = e.toString();
+    }
+    return result;
+  }
+
+  // Tells whether this JVM has virtual threads (Java 21 or later)
+  public static boolean hasVirtualThreads() {
+    try {
+      Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return true;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+  private ExecutorService newExecutor() {
+    if (!virtualThreads) {
+      return Executors.newFixedThreadPool(threads);
+    }
+    try {
+      return (ExecutorService) Executors.class
+          .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      throw new UnsupportedOperationException("virtual threads need Java 21 or later", e);
+    }
+  }
+
+  /**
+   * Compiles the files, writing the outputs and, to out, the files that
+   * failed and a throughput summary. Returns the number of failed files.
+   */
+  public int compileAll(List<Path> files, PrintStream out) throws InterruptedException {
+    long start = System.nanoTime();
+    ExecutorService executor = newExecutor();
+    List<Future<Result>> results = new ArrayList<Future<Result>>(files.size());
+    // foo.txt and foo.tst both write foo.s: the first one listed keeps it
+    Map<Path, Path> outputs = new HashMap<Path, Path>();
+    for (Path file : files) {
+      Path first = outputs.putIfAbsent(outputFile(file).toAbsolutePath().normalize(), file);
+      if (first != null) {
+        Result result = new Result();
+        result.source = file;
+        result.failure = "output " + outputFile(file) + " is already written for " + first;
+        results.add(CompletableFuture.completedFuture(result));
+      } else {
+        results.add(executor.submit(() -> compile(file)));
+      }
+    }
+
+    long tokens = 0;
+    int failed = 0;
+    try {
+      for (Future<Result> future : results) {
+        Result result = future.get();
+        tokens += result.tokens;
+        if (result.failure != null) {
+          failed++;
+          if (!quiet) {
+            out.println(result.source + ": " + result.failure.split("\n", 2)[0]);
+          }
+        }
+      }
+    } catch (ExecutionException e) {
+      throw new AssertionError(e);  // compile() catches everything it can
+    } finally {
+      executor.shutdown();
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+
+    out.printf("Compiled %d files (%d failed), %d tokens in %.3f s%n",
+        files.size(), failed, tokens, seconds);
+    out.printf("%.1f files/sec, %.1f tokens/sec (%s)%n",
+        files.size() / seconds, tokens / seconds,
+        virtualThreads ? "virtual threads" : threads + (threads == 1 ? " thread" : " threads"));
+    if (cache != null) {
+      out.printf("Cache: %d hits, %d misses%n", cache.getHits(), cache.getMisses());
+    }
+    return failed;
+  }
+
+  // ---------- main() ----------
+  public static void main(String[] args) throws IOException, InterruptedException {
+    BatchCompiler batch = new BatchCompiler();
+    List<String> inputs = new ArrayList<String>();
+    String cacheDirectory = null;
+    boolean errorRecovery = false;
+    long cacheMegabytes = DEFAULT_CACHE_MEGABYTES;
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-threads") && i + 1 < args.length) {
+        batch.setThreads(Integer.parseInt(args[++i]));
+      } else if (args[i].equals("-virtual")) {
+        if (!hasVirtualThreads()) {
+          System.out.println("-virtual needs Java 21 or later, this is Java "
+              + Runtime.version().feature());
+          usage();
+        }
+        batch.setVirtualThreads(true);
+      } else if (args[i].equals("-include") && i + 1 < args.length) {
+        batch.setInclude(args[++i]);
+      } else if (args[i].equals("-cache") && i + 1 < args.length) {
+        cacheDirectory = args[++i];
+      } else if (args[i].equals("-cacheSize") && i + 1 < args.length) {
+        cacheMegabytes = Long.parseLong(args[++i]);
+      } else if (args[i].equals("-recover")) {
+        errorRecovery = true;
+      } else if (args[i].equals("-quiet")) {
+        batch.setQuiet(true);
+      } else {
+        inputs.add(args[i]);
+      }
+    }
+    if (inputs.isEmpty()) {
+      usage();
+    }
+    batch.setErrorRecovery(errorRecovery);
+    if (cacheDirectory != null) {
+      batch.setCache(new CompilationCache(Paths.get(cacheDirectory), cacheMegabytes << 20, "",
+          errorRecovery));
+    }
+
+    List<Path> files = batch.collect(inputs);
+    int failed = batch.compileAll(files, System.out);
+    System.exit(failed == 0 ? 0 : 2);
+  }
+
+  private static void usage() {
+    System.out.println("Usage: java BatchCompiler [-threads n | -virtual] [-include glob]"
+        + " [-cache directory [-cacheSize megabytes]] [-recover] [-quiet]"
+        + " (<directory> | <glob> | @<listFile> | <file>) ...");
+    System.exit(1);
+  }
+}
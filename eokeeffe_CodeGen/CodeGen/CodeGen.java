@@ -1,5 +1,6 @@
 
 import java.io.*;
+import java.util.Arrays;
 import java.util.Vector;
 
 /* NOTE: PLEASE FEEL FREE TO USE ALL, PART, OR NONE OF THIS FILE
@@ -7,10 +8,10 @@ import java.util.Vector;
 
 public class CodeGen {
 
-	public static String fp = "$fp";
-	public static String sp = "$sp";
-	public static String gp = "$gp";
-	public static String zero = "$0";
+	public static final String fp = "$fp";
+	public static final String sp = "$sp";
+	public static final String gp = "$gp";
+	public static final String zero = "$0";
 	Boolean tempRegs[]; // there are 8 temporary registers
 	Boolean args[]; // there are 4 arguments
 	Boolean savedTempRegs[];// there are 8 saved temporary registers
@@ -26,8 +27,14 @@ public class CodeGen {
 							// data cell
 	int labelCounter; // Used for generating unique labels as needed throughout
 						// the program
+	NamePool names; // Identifiers of the program, shared with the parser
+	String[] dataLabels; // "userdata." label of each name id, built on first use
 
 	CodeGen() {
+		this(new NamePool());
+	}
+
+	CodeGen(NamePool names) {
 		tempRegs = new Boolean[8];
 		args = new Boolean[8];
 		savedTempRegs = new Boolean[8];
@@ -38,6 +45,8 @@ public class CodeGen {
 		codeSeg = new Vector<String>();
 		dataSeg = new Vector<String>();
 		labelCounter = 0;
+		this.names = names;
+		dataLabels = new String[64];
 
 		for (int i = 0; i < 8; i++) {
 			args[i] = savedTempRegs[i] = tempRegs[i] = false;
@@ -49,6 +58,15 @@ public class CodeGen {
 		return "label." + (labelCounter++);
 	}
 
+	// Returns the data segment label of the name with the given id
+	public String dataLabel(int nameId) {
+		if (nameId >= dataLabels.length)
+			dataLabels = Arrays.copyOf(dataLabels, Math.max(nameId + 1, dataLabels.length * 2));
+		if (dataLabels[nameId] == null)
+			dataLabels[nameId] = "userdata." + names.getName(nameId);
+		return dataLabels[nameId];
+	}
+
 	// Insert an instruction into the code segment
 	public void insertInstruction(String instr) {
 		codeSeg.add(instr);
@@ -73,14 +91,14 @@ public class CodeGen {
 		insertInstruction("li $t" + immediateRegister + " , " + value);
 	}
 
-	public void loadAddress(String symbolName, int immediateRegister) {
-		insertInstruction("la $t" + immediateRegister + " , userdata."
-				+ symbolName);
+	public void loadAddress(int nameId, int immediateRegister) {
+		insertInstruction("la $t" + immediateRegister + " , "
+				+ dataLabel(nameId));
 	}
 
-	public void storeAddress(String symbolName, int immediateRegister) {
-		insertInstruction("sw	$t" + immediateRegister + ", userdata."
-				+ symbolName);
+	public void storeAddress(int nameId, int immediateRegister) {
+		insertInstruction("sw	$t" + immediateRegister + ", "
+				+ dataLabel(nameId));
 	}
 
 	public void loadWord(int src, int dest) {
@@ -351,7 +369,7 @@ public class CodeGen {
 	// generate code to read an integer; the value is stored into a register and
 	// the
 	// register number is the return result of the function
-	public int insertInputIntSequence(String name) {
+	public int insertInputIntSequence(int nameId) {
 		/* FILL THIS IN */
 
 		int register = getTemporaryRegister();
@@ -363,7 +381,7 @@ public class CodeGen {
 		insertInstruction("li    $v0, 5");
 		insertInstruction("syscall");
 		insertInstruction("move  $s" + sregister + ", $v0");
-		insertInstruction("la    $t" + register + ", userdata." + name);
+		insertInstruction("la    $t" + register + ", " + dataLabel(nameId));
 		insertInstruction("sw    $s" + sregister + ", 0($t" + register + ")");
 
 		releaseTemporarySavedRegister(sregister);
@@ -395,6 +413,38 @@ public class CodeGen {
 		insertInstruction("syscall");
 	}
 
+	// Which temporary and saved temporary registers are in use, in that
+	// order
+	boolean[] saveRegisters() {
+		boolean[] inUse = new boolean[16];
+		for (int i = 0; i < 8; i++) {
+			inUse[i] = tempRegs[i];
+			inUse[8 + i] = savedTempRegs[i];
+		}
+		return inUse;
+	}
+
+	// Puts back registers in use as saveRegisters() returned them
+	void restoreRegisters(boolean[] inUse) {
+		for (int i = 0; i < 8; i++) {
+			tempRegs[i] = inUse[i];
+			savedTempRegs[i] = inUse[8 + i];
+		}
+	}
+
+	// Replaces the instructions in [start, end) and the data in
+	// [dataStart, dataEnd) with the code and data part generated, keeping
+	// labels unique
+	public void splice(int start, int end, int dataStart, int dataEnd, CodeGen part) {
+		codeSeg.subList(start, end).clear();
+		codeSeg.addAll(start, part.codeSeg);
+		dataSeg.subList(dataStart, dataEnd).clear();
+		dataSeg.addAll(dataStart, part.dataSeg);
+		if (mainInstruction >= end)
+			mainInstruction += part.codeSeg.size() - (end - start);
+		labelCounter = Math.max(labelCounter, part.labelCounter);
+	}
+
 	// Print the program to the provided stream
 	public void dumpProgram(PrintWriter printWriter) {
 		printWriter
@@ -431,6 +481,7 @@ public class CodeGen {
 	}
 
 	public void declareConstOrVar(Symbol sym) {
-		insertData("userdata." + sym.getName() + ":\t.space\t 4");
+		int nameId = sym.getNameId() >= 0 ? sym.getNameId() : names.intern(sym.getName());
+		insertData(dataLabel(nameId) + ":\t.space\t 4");
 	}
 }
\ No newline at end of file
@@ -0,0 +1,443 @@
+
+import java.util.List;
+
+/**
+ * The code generation pass over a type checked Ast.
+ *
+ * Expressions leave their value (or, for a selector, the variable's
+ * address) on top of the stack, and the instructions are emitted into
+ * a CodeGen in source order.
+ */
+public class CodeGenerator implements Ast.Visitor<Void> {
+
+	private CodeGen codeGen;
+
+	public CodeGenerator(CodeGen codeGen) {
+		this.codeGen = codeGen;
+	}
+
+	public void generate(Ast node) throws ParserException {
+		node.accept(this);
+	}
+
+	/**
+	 * Generates the code of node n of a compact tree, the same as for the
+	 * Ast it stands for.
+	 */
+	public void generate(AstArena tree, int n) {
+		switch (tree.getKind(n)) {
+		case AstArena.PROGRAM: {
+			int main = tree.getMainBody();
+			for (int child = tree.getFirstChild(n); child >= 0; child = tree.getNextSibling(child)) {
+				if (child == main) {
+					enterMain();
+					generate(tree, child);
+					exitMain();
+				} else {
+					generate(tree, child);
+				}
+			}
+			break;
+		}
+		case AstArena.BODY:
+		case AstArena.BLOCK:
+		case AstArena.PROCEDURE:
+		case AstArena.PROCEDURE_STATEMENT:
+		case AstArena.RETURN:
+			for (int child = tree.getFirstChild(n); child >= 0; child = tree.getNextSibling(child)) {
+				generate(tree, child);
+			}
+			break;
+		case AstArena.CONST: {
+			Symbol sym = tree.getSymbol(n);
+			codeGen.declareConstOrVar(sym);
+			int immediate = codeGen.getTemporaryRegister();
+			codeGen.loadImmediate(immediate, tree.getLexeme(n));
+			int addrReg = codeGen.getTemporaryRegister();
+			codeGen.loadAddress(sym.getNameId(), addrReg);
+			codeGen.storeValue(addrReg, immediate);
+
+			codeGen.releaseTemporaryRegister(immediate);
+			codeGen.releaseTemporaryRegister(addrReg);
+			break;
+		}
+		case AstArena.VAR:
+			for (int name = tree.getFirstChild(n); name >= 0; name = tree.getNextSibling(name)) {
+				codeGen.declareConstOrVar(tree.getSymbol(name));
+			}
+			break;
+		case AstArena.ASSIGNMENT: {
+			codeGen.labelComment("ASSIGMENT");
+
+			generate(tree, tree.getTarget(n));
+			int value = tree.getValue(n);
+			if (tree.getKind(value) != AstArena.STRING_LITERAL) {
+				generate(tree, value);
+
+				codeGen.labelComment("Pop Assigning");
+				int rhsReg = codeGen.pop();
+				int lhsReg = codeGen.pop();
+
+				codeGen.labelComment("Assigning");
+				codeGen.storeValue(lhsReg, rhsReg);
+
+				codeGen.releaseTemporaryRegister(rhsReg);
+				codeGen.releaseTemporaryRegister(lhsReg);
+			}
+			break;
+		}
+		case AstArena.INPUT:
+			codeGen.labelComment("::INPUT::");
+
+			for (int name = tree.getFirstChild(n); name >= 0; name = tree.getNextSibling(name)) {
+				int returnReg = codeGen.insertInputIntSequence(tree.getSymbol(name).getNameId());
+				codeGen.releaseTemporaryRegister(returnReg);
+			}
+			break;
+		case AstArena.OUTPUT:
+			codeGen.labelComment("::OUTPUT::");
+
+			for (int name = tree.getFirstChild(n); name >= 0; name = tree.getNextSibling(name)) {
+				int addreg = codeGen.getTemporaryRegister();
+				codeGen.loadAddress(tree.getSymbol(name).getNameId(), addreg);
+				codeGen.insertPrintIntSequence(addreg);
+				codeGen.releaseTemporaryRegister(addreg);
+			}
+			break;
+		case AstArena.IF: {
+			String branchout = codeGen.makeLabel();// create the branch label
+
+			condition(tree, tree.getCondition(n), branchout);
+			generate(tree, tree.getThenBlock(n));
+			int elseBlock = tree.getElseBlock(n);
+			if (elseBlock >= 0) {
+				codeGen.insertInstruction(branchout + ":");
+				codeGen.debugComment("ELSE");
+				generate(tree, elseBlock);
+			} else {
+				codeGen.insertInstruction(branchout + ":");
+			}
+			break;
+		}
+		case AstArena.WHILE: {
+			String branchin = codeGen.makeLabel();
+			String branchout = codeGen.makeLabel();
+
+			codeGen.insertInstruction(branchin + ":");
+
+			condition(tree, tree.getCondition(n), branchout);
+			generate(tree, tree.getThenBlock(n));
+
+			codeGen.insertInstruction("j " + branchin);
+			codeGen.insertInstruction(branchout + ":");
+			codeGen.debugComment("END OF WHILE:" + branchin);
+			break;
+		}
+		case AstArena.SELECTOR: {
+			Symbol sym = tree.getSymbol(n);
+			codeGen.labelComment("Selector => " + sym.toString());
+
+			for (int index = tree.getFirstChild(n); index >= 0; index = tree.getNextSibling(index)) {
+				generate(tree, index);
+			}
+
+			int tempAddr = codeGen.getTemporaryRegister();
+
+			codeGen.loadAddress(sym.getNameId(), tempAddr);
+			codeGen.push(tempAddr);
+
+			codeGen.releaseTemporaryRegister(tempAddr);
+			break;
+		}
+		case AstArena.DEREFERENCE: {
+			generate(tree, tree.getSelector(n));
+			int register = codeGen.getTemporaryRegister();
+			codeGen.deReference(register);
+			codeGen.push(register);
+			codeGen.releaseTemporaryRegister(register);
+			break;
+		}
+		case AstArena.NUMBER: {
+			int register = codeGen.getTemporaryRegister();
+			codeGen.loadImmediate(register, tree.getLexeme(n));
+			codeGen.push(register);
+
+			codeGen.releaseTemporaryRegister(register);
+			break;
+		}
+		case AstArena.BINARY: {
+			generate(tree, tree.getLhs(n));
+			generate(tree, tree.getRhs(n));
+
+			int lhsReg = codeGen.pop();
+			codeGen.debugComment("Pop left");
+			int rhsReg = codeGen.pop();
+			codeGen.debugComment("Pop Right");
+
+			switch (tree.getTokenKind(n)) {
+			case MULT: codeGen.multiply(lhsReg, rhsReg); break;
+			case DIV: codeGen.divide(lhsReg, rhsReg); break;
+			case ADD: codeGen.add(lhsReg, rhsReg); break;
+			case SUB: codeGen.subtract(lhsReg, rhsReg); break;
+			default:
+			}
+
+			codeGen.releaseTemporaryRegister(rhsReg);
+			codeGen.releaseTemporaryRegister(lhsReg);
+			break;
+		}
+		default:
+			// a CALL leaves nothing to generate
+		}
+	}
+
+	private void condition(AstArena tree, int n, String branchout) {
+		generate(tree, tree.getLhs(n));
+		generate(tree, tree.getRhs(n));
+		codeGen.cond(tree.getTokenKind(n).defaultLexeme, branchout);
+	}
+
+	// ---------- Program structure ----------
+	@Override
+	public Void visit(Ast.Program node) throws ParserException {
+		for (Ast.Declaration declaration : node.getDeclarations()) {
+			declaration.accept(this);
+		}
+		for (Ast.ProcedureDeclaration procedure : node.getProcedures()) {
+			procedure.accept(this);
+		}
+		enterMain();
+		node.getMain().accept(this);
+		exitMain();
+		return null;
+	}
+
+	public void enterMain() {
+		codeGen.labelComment("\tMAIN PROCEDURE");
+
+		codeGen.insertInstruction("proc.main:");
+		codeGen.labelComment(" MAIN ");
+	}
+
+	public void exitMain() {
+		codeGen.insertExitSequence();
+	}
+
+	@Override
+	public Void visit(Ast.Body node) throws ParserException {
+		for (Ast.Declaration declaration : node.getDeclarations()) {
+			declaration.accept(this);
+		}
+		for (Ast.ProcedureDeclaration procedure : node.getProcedures()) {
+			procedure.accept(this);
+		}
+		statements(node.getStatements());
+		return null;
+	}
+
+	@Override
+	public Void visit(Ast.ProcedureDeclaration node) throws ParserException {
+		return node.getBody().accept(this);
+	}
+
+	@Override
+	public Void visit(Ast.ConstDeclaration node) {
+		Symbol sym = node.getSymbol();
+		codeGen.declareConstOrVar(sym);
+		int immediate = codeGen.getTemporaryRegister();
+		codeGen.loadImmediate(immediate, node.getNumber().getLexeme());
+		int addrReg = codeGen.getTemporaryRegister();
+		codeGen.loadAddress(sym.getNameId(), addrReg);
+		codeGen.storeValue(addrReg, immediate);
+
+		codeGen.releaseTemporaryRegister(immediate);
+		codeGen.releaseTemporaryRegister(addrReg);
+		return null;
+	}
+
+	@Override
+	public Void visit(Ast.VarDeclaration node) {
+		for (Symbol sym : node.getSymbols()) {
+			codeGen.declareConstOrVar(sym);
+		}
+		return null;
+	}
+
+	// ---------- Statements ----------
+	private void statements(List<Ast.Statement> statements) throws ParserException {
+		for (Ast.Statement statement : statements) {
+			statement.accept(this);
+		}
+	}
+
+	@Override
+	public Void visit(Ast.Assignment node) throws ParserException {
+		codeGen.labelComment("ASSIGMENT");
+
+		node.getTarget().accept(this);
+		if (node.getValue() != null) {
+			node.getValue().accept(this);
+
+			/**
+			 * Generate code to assignment value to a variable
+			 */
+
+			codeGen.labelComment("Pop Assigning");
+			int rhsReg = codeGen.pop();
+			int lhsReg = codeGen.pop();
+
+			codeGen.labelComment("Assigning");
+			codeGen.storeValue(lhsReg, rhsReg);
+
+			codeGen.releaseTemporaryRegister(rhsReg);
+			codeGen.releaseTemporaryRegister(lhsReg);
+		}
+		return null;
+	}
+
+	@Override
+	public Void visit(Ast.Input node) {
+		codeGen.labelComment("::INPUT::");
+
+		for (Symbol n : node.getParameters()) {
+			int returnReg = codeGen.insertInputIntSequence(n.getNameId());
+			codeGen.releaseTemporaryRegister(returnReg);
+		}
+		return null;
+	}
+
+	@Override
+	public Void visit(Ast.Output node) {
+		codeGen.labelComment("::OUTPUT::");
+
+		for (Symbol n : node.getParameters()) {
+			int addreg = codeGen.getTemporaryRegister();
+			codeGen.loadAddress(n.getNameId(), addreg);
+			codeGen.insertPrintIntSequence(addreg);
+			codeGen.releaseTemporaryRegister(addreg);
+		}
+		return null;
+	}
+
+	@Override
+	public Void visit(Ast.IfStatement node) throws ParserException {
+		String branchout = codeGen.makeLabel();// create the branch label
+
+		condition(node.getCondition(), branchout);
+		statements(node.getThenStatements());
+		if (node.getElseStatements() != null) {
+			codeGen.insertInstruction(branchout + ":");
+			codeGen.debugComment("ELSE");
+			statements(node.getElseStatements());
+		} else {
+			codeGen.insertInstruction(branchout + ":");
+		}
+		return null;
+	}
+
+	@Override
+	public Void visit(Ast.WhileStatement node) throws ParserException {
+		String branchin = codeGen.makeLabel();
+		String branchout = codeGen.makeLabel();
+
+		codeGen.insertInstruction(branchin + ":");
+
+		condition(node.getCondition(), branchout);
+		statements(node.getStatements());
+
+		codeGen.insertInstruction("j " + branchin);
+		codeGen.insertInstruction(branchout + ":");
+		codeGen.debugComment("END OF WHILE:" + branchin);
+		return null;
+	}
+
+	@Override
+	public Void visit(Ast.ReturnStatement node) throws ParserException {
+		return node.getValue().accept(this);
+	}
+
+	@Override
+	public Void visit(Ast.ProcedureStatement node) throws ParserException {
+		return node.getCall().accept(this);
+	}
+
+	// Branches to branchout if the condition is false
+	private void condition(Ast.Condition node, String branchout) throws ParserException {
+		node.getLhs().accept(this);
+		node.getRhs().accept(this);
+		codeGen.cond(node.getOp().getLexeme(), branchout);
+	}
+
+	// ---------- Expressions ----------
+	@Override
+	public Void visit(Ast.Selector node) throws ParserException {
+		// resolve the address of the variable
+		codeGen.labelComment("Selector => " + node.getSymbol().toString());
+
+		for (Ast.Expression index : node.getIndices()) {
+			index.accept(this);
+		}
+
+		/**
+		 * Make sure to check to see if that variable is an address to a
+		 * variable over the actual value of the variable
+		 */
+		int tempAddr = codeGen.getTemporaryRegister();
+
+		codeGen.loadAddress(node.getSymbol().getNameId(), tempAddr);
+		codeGen.push(tempAddr);
+
+		codeGen.releaseTemporaryRegister(tempAddr);
+		return null;
+	}
+
+	@Override
+	public Void visit(Ast.Dereference node) throws ParserException {
+		node.getSelector().accept(this);
+		int register = codeGen.getTemporaryRegister();
+		codeGen.deReference(register);
+		codeGen.push(register);
+		codeGen.releaseTemporaryRegister(register);
+		return null;
+	}
+
+	@Override
+	public Void visit(Ast.NumberLiteral node) {
+		// get the number and pass the numeric value onto the stack
+		int register = codeGen.getTemporaryRegister();
+		codeGen.loadImmediate(register, node.getNumber().getLexeme());
+		codeGen.push(register);
+
+		codeGen.releaseTemporaryRegister(register);
+		return null;
+	}
+
+	@Override
+	public Void visit(Ast.ProcedureCall node) {
+		return null;
+	}
+
+	@Override
+	public Void visit(Ast.BinaryExpression node) throws ParserException {
+		node.getLhs().accept(this);
+		node.getRhs().accept(this);
+
+		/**
+		 * Generate code to combine the two values on top of the stack
+		 */
+		int lhsReg = codeGen.pop();
+		codeGen.debugComment("Pop left");
+		int rhsReg = codeGen.pop();
+		codeGen.debugComment("Pop Right");
+
+		String op = node.getOp().getLexeme();
+		if (op.equals("*")) {codeGen.multiply(lhsReg, rhsReg);}
+		else if (op.equals("/")) {codeGen.divide(lhsReg, rhsReg);}
+		else if (op.equals("+")) {codeGen.add(lhsReg, rhsReg);}
+		else if (op.equals("-")) {codeGen.subtract(lhsReg, rhsReg);}
+
+		codeGen.releaseTemporaryRegister(rhsReg);
+		codeGen.releaseTemporaryRegister(lhsReg);
+		return null;
+	}
+}
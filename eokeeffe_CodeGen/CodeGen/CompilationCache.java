@@ -0,0 +1,338 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * A disk cache of compiler outputs, in front of Compiler.compile().
+ *
+ * Entries are keyed on the SHA-256 of the source bytes, Compiler.VERSION and
+ * the options the cache was made with (the options string and error
+ * recovery), so an unchanged file is never scanned or parsed again. Each
+ * entry is one file holding the output and the error list. The directory is
+ * kept under maxBytes by deleting the least recently used entries, using
+ * the file modification time, which a hit updates, as the time of last
+ * use. Once over maxBytes it is cut down to 90% of it, so the directory is
+ * not listed again on every miss after it fills up. Safe to use from many
+ * threads, and from many processes sharing a directory (entries are
+ * written to a temporary file and moved into place). An entry that can't be
+ * read is deleted and counted as a miss.
+ */
+public class CompilationCache {
+
+  private static final String ENTRY_SUFFIX = ".entry";
+
+  /**
+   * The output and errors of one compile.
+   */
+  public static class Result {
+    private String output;
+    private List<String> errors;
+    private int tokenCount;
+    private boolean hit;
+
+    Result(String output, List<String> errors, int tokenCount, boolean hit) {
+      this.output = output;
+      this.errors = errors;
+      this.tokenCount = tokenCount;
+      this.hit = hit;
+    }
+
+    public String getOutput() {
+      return output;
+    }
+
+    // empty if the source compiled
+    public List<String> getErrors() {
+      return errors;
+    }
+
+    // tokens read by the compile, even if it was a hit
+    public int getTokenCount() {
+      return tokenCount;
+    }
+
+    public boolean isHit() {
+      return hit;
+    }
+  }
+
+  private Path directory;
+  private long maxBytes;
+  private String options;
+  private boolean errorRecovery;
+
+  private AtomicLong hits = new AtomicLong();
+  private AtomicLong misses = new AtomicLong();
+  private long size;  // bytes in the directory, guarded by this
+
+  public CompilationCache(Path directory, long maxBytes) throws IOException {
+    this(directory, maxBytes, "");
+  }
+
+  /**
+   * options names anything besides the source that changes the output, so
+   * caches made with different options never share entries.
+   */
+  public CompilationCache(Path directory, long maxBytes, String options) throws IOException {
+    this(directory, maxBytes, options, false);
+  }
+
+  /**
+   * Compiles with Compiler.setErrorRecovery(errorRecovery); entries made
+   * with and without it are kept apart.
+   */
+  public CompilationCache(Path directory, long maxBytes, String options, boolean errorRecovery)
+      throws IOException {
+    this.directory = directory;
+    this.maxBytes = maxBytes;
+    this.options = options;
+    this.errorRecovery = errorRecovery;
+    Files.createDirectories(directory);
+    for (Path entry : entries()) {
+      size += sizeOf(entry);
+    }
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  // ---------- Compiling ----------
+  /**
+   * Returns the output of compiling sourceFilename, from the cache if the
+   * same source was compiled before.
+   */
+  public Result compile(String sourceFilename) throws IOException {
+    byte[] source = Files.readAllBytes(Paths.get(sourceFilename));
+    Path entry = directory.resolve(key(source) + ENTRY_SUFFIX);
+
+    Result cached = read(entry);
+    if (cached != null) {
+      hits.incrementAndGet();
+      return cached;
+    }
+    misses.incrementAndGet();
+
+    // decoded the way Scanner reads a file
+    char[] chars = new String(source, Charset.defaultCharset()).toCharArray();
+    Compiler compiler = new Compiler(sourceFilename, chars);
+    compiler.setErrorRecovery(errorRecovery);
+    String output = compiler.compile();
+    Result result = new Result(output, compiler.getErrors(), compiler.getTokenCount(), false);
+    write(entry, result);
+    return result;
+  }
+
+  private String key(byte[] source) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new AssertionError(e);  // every JVM has SHA-256
+    }
+    digest.update(source);
+    digest.update((byte) 0);
+    digest.update(Compiler.VERSION.getBytes(StandardCharsets.UTF_8));
+    digest.update((byte) 0);
+    digest.update(options.getBytes(StandardCharsets.UTF_8));
+    digest.update((byte) 0);
+    digest.update((byte) (errorRecovery ? 1 : 0));
+
+    StringBuilder hex = new StringBuilder(64);
+    for (byte b : digest.digest()) {
+      hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return hex.toString();
+  }
+
+  // ---------- Entries ----------
+  // The entry format is: int token count, int error count, the errors, the
+  // output, where each string is an int byte count and that many UTF-8 bytes
+
+  // null if there is no entry, it was evicted while being read, or it can't
+  // be read (truncated by a crash, say), in which case it is deleted
+  private Result read(Path entry) {
+    DataInputStream in;
+    long bytes;
+    try {
+      bytes = Files.size(entry);
+      in = new DataInputStream(new BufferedInputStream(Files.newInputStream(entry)));
+    } catch (IOException e) {
+      return null;
+    }
+    try {
+      try {
+        int tokenCount = in.readInt();
+        int errorCount = readCount(in, bytes);
+        List<String> errors = new ArrayList<String>(errorCount);
+        for (int i = 0; i < errorCount; i++) {
+          errors.add(readString(in, bytes));
+        }
+        String output = readString(in, bytes);
+        touch(entry);
+        return new Result(output, errors, tokenCount, true);
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      removed(entry, bytes);
+      return null;
+    }
+  }
+
+  private static String readString(DataInputStream in, long entryBytes) throws IOException {
+    byte[] bytes = new byte[readCount(in, entryBytes)];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  // A count can't be more than the bytes in the entry, checked before
+  // anything of that size is allocated
+  private static int readCount(DataInputStream in, long entryBytes) throws IOException {
+    int count = in.readInt();
+    if (count < 0 || count > entryBytes) {
+      throw new IOException("Corrupt cache entry, count " + count);
+    }
+    return count;
+  }
+
+  private void write(Path entry, Result result) throws IOException {
+    Path temp = Files.createTempFile(directory, "tmp", ".part");
+    try {
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)));
+      try {
+        out.writeInt(result.tokenCount);
+        out.writeInt(result.errors.size());
+        for (String error : result.errors) {
+          writeString(out, error);
+        }
+        writeString(out, result.output);
+      } finally {
+        out.close();
+      }
+      long bytes = Files.size(temp);
+      try {
+        Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING);
+      }
+      added(bytes);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  private static void writeString(DataOutputStream out, String string) throws IOException {
+    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static void touch(Path entry) {
+    try {
+      Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+    } catch (IOException e) {
+      // evicted meanwhile, the entry was still read whole
+    }
+  }
+
+  // ---------- Eviction ----------
+  private synchronized void added(long bytes) throws IOException {
+    size += bytes;
+    if (size > maxBytes) {
+      evict();
+    }
+  }
+
+  private synchronized void removed(Path entry, long bytes) {
+    try {
+      if (Files.deleteIfExists(entry)) {
+        size -= bytes;
+      }
+    } catch (IOException e) {
+      // still there, the write after the miss replaces it
+    }
+  }
+
+  private static class Entry {
+    Path path;
+    long bytes;
+    long lastUsed;
+  }
+
+  // Deletes the least recently used entries until the cache is down to 90%
+  // of maxBytes
+  private void evict() throws IOException {
+    long target = maxBytes - maxBytes / 10;
+    List<Entry> byAge = new ArrayList<Entry>();
+    size = 0;
+    for (Path path : entries()) {
+      Entry entry = new Entry();
+      entry.path = path;
+      entry.bytes = sizeOf(path);
+      entry.lastUsed = lastModified(path);
+      size += entry.bytes;
+      byAge.add(entry);
+    }
+    Collections.sort(byAge, (a, b) -> Long.compare(a.lastUsed, b.lastUsed));
+    for (int i = 0; i < byAge.size() && size > target; i++) {
+      if (Files.deleteIfExists(byAge.get(i).path)) {
+        size -= byAge.get(i).bytes;
+      }
+    }
+  }
+
+  private List<Path> entries() throws IOException {
+    List<Path> entries = new ArrayList<Path>();
+    Stream<Path> list = Files.list(directory);
+    try {
+      list.forEach(path -> {
+        if (path.getFileName().toString().endsWith(ENTRY_SUFFIX)) entries.add(path);
+      });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    } finally {
+      list.close();
+    }
+    return entries;
+  }
+
+  // 0 for an entry another process has just evicted
+  private static long sizeOf(Path entry) {
+    try {
+      return Files.size(entry);
+    } catch (IOException e) {
+      return 0;
+    }
+  }
+
+  private static long lastModified(Path entry) {
+    try {
+      return Files.getLastModifiedTime(entry).toMillis();
+    } catch (IOException e) {
+      return 0;
+    }
+  }
+}
@@ -0,0 +1,131 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * A thin client for CompileServer. One connection can send any number of
+ * compile requests, one after the other.
+ */
+public class CompileClient implements Closeable {
+
+  /**
+   * The answer to one request.
+   */
+  public static class Result {
+    private boolean ok;
+    private String output;
+    private String errors;
+
+    Result(boolean ok, String output, String errors) {
+      this.ok = ok;
+      this.output = output;
+      this.errors = errors;
+    }
+
+    // false if any errors were found
+    public boolean isOk() {
+      return ok;
+    }
+
+    public String getOutput() {
+      return output;
+    }
+
+    // one per line, empty if there were none
+    public String getErrors() {
+      return errors;
+    }
+  }
+
+  private SocketChannel channel;
+  private DataInputStream in;
+  private OutputStream out;
+
+  public CompileClient(SocketAddress address) throws IOException {
+    channel = SocketChannel.open(address);
+    in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+    out = new BufferedOutputStream(Channels.newOutputStream(channel));
+  }
+
+  // Has the server compile a file it can read itself
+  public Result compileFile(String path) throws IOException {
+    out.write(("FILE " + path + "\n").getBytes(StandardCharsets.UTF_8));
+    out.flush();
+    return readResult();
+  }
+
+  // Sends the source over, name is only used to name it
+  public Result compileSource(String name, String source) throws IOException {
+    byte[] bytes = source.getBytes(StandardCharsets.UTF_8);
+    out.write(("SOURCE " + name + " " + bytes.length + "\n").getBytes(StandardCharsets.UTF_8));
+    out.write(bytes);
+    out.flush();
+    return readResult();
+  }
+
+  private Result readResult() throws IOException {
+    String status = CompileServer.readLine(in);
+    if (status == null) throw new EOFException("The server closed the connection");
+    String[] words = status.split(" ");
+    byte[] output = new byte[Integer.parseInt(words[1])];
+    in.readFully(output);
+    byte[] errors = new byte[Integer.parseInt(words[2])];
+    in.readFully(errors);
+    return new Result(words[0].equals("OK"), new String(output, StandardCharsets.UTF_8),
+        new String(errors, StandardCharsets.UTF_8));
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  // ---------- main() ----------
+  // Sends each file's source to the server and prints its output and errors
+  public static void main(String[] args) throws IOException {
+    SocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(),
+        CompileServer.DEFAULT_PORT);
+    int first = 0;
+    if (args.length > 2 && args[0].equals("-unix")) {
+      address = UnixDomainSocketAddress.of(args[1]);
+      first = 2;
+    } else if (args.length > 2 && args[0].equals("-port")) {
+      address = new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(args[1]));
+      first = 2;
+    }
+    if (first == args.length) {
+      System.out.println("Usage: java CompileClient [-port n | -unix socketPath] <file1> <file2> ...");
+      System.exit(1);
+    }
+
+    boolean allOk = true;
+    CompileClient client = new CompileClient(address);
+    try {
+      for (int i = first; i < args.length; i++) {
+        Path file = Paths.get(args[i]);
+        String source = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        Result result = client.compileSource(args[i], source);
+        System.out.print(result.getOutput());
+        System.err.print(result.getErrors());
+        allOk &= result.isOk();
+      }
+    } finally {
+      client.close();
+    }
+    System.exit(allOk ? 0 : 2);
+  }
+}
@@ -0,0 +1,309 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A long-running compile server, so compiles skip JVM startup and run on
+ * scanner, parser and code generator paths the JIT has already compiled.
+ *
+ * It listens on a loopback TCP port or a Unix-domain socket. A client sends
+ * one request per line and may send several on a connection:
+ *
+ *   FILE path                compile the file at path (on the server, under
+ *                            its file root)
+ *   SOURCE name byteCount    compile the byteCount UTF-8 bytes that follow
+ *
+ * and gets back, for each request, the line
+ *
+ *   (OK | FAILED) outputByteCount errorByteCount
+ *
+ * followed by the SPIM output and the errors (one per line, blank if none),
+ * both UTF-8. See CompileClient.
+ *
+ * A byteCount above the maximum source size (16 MB unless set) fails the
+ * request and ends the connection. FILE fails for a path outside the file
+ * root, and always if no root was set, so clients can't have the server
+ * read whatever its account can. A Unix-domain socket is made readable and
+ * writable by its owner only.
+ */
+public class CompileServer {
+
+  public static final int DEFAULT_PORT = 7431;
+
+  public static final int DEFAULT_MAX_SOURCE_BYTES = 16 << 20;
+
+  private static final int MAX_LINE_LENGTH = 64 * 1024;
+
+  private ServerSocketChannel server;
+  private ExecutorService workers = Executors.newCachedThreadPool();
+  private boolean errorRecovery;
+  private int maxSourceBytes = DEFAULT_MAX_SOURCE_BYTES;
+  private Path fileRoot;  // null == refuse FILE requests
+  // where clients connect; a Unix-domain socket is bound elsewhere first
+  private SocketAddress address;
+
+  /**
+   * Listens on port on the loopback interface (0 == any free port).
+   */
+  public static CompileServer onPort(int port) throws IOException {
+    ServerSocketChannel channel = ServerSocketChannel.open();
+    channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    return new CompileServer(channel);
+  }
+
+  /**
+   * Listens on a Unix-domain socket at path, replacing a stale one.
+   *
+   * The socket is bound in a new directory only its owner can enter, made
+   * readable and writable by its owner only and then moved to path, so it
+   * is never reachable by others on the way.
+   */
+  public static CompileServer onUnixSocket(Path path) throws IOException {
+    Files.deleteIfExists(path);
+    ServerSocketChannel channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+    Path parent = path.toAbsolutePath().getParent();
+    Path directory;
+    try {
+      directory = Files.createTempDirectory(parent, ".compile-server",
+          PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+    } catch (UnsupportedOperationException e) {
+      // not a POSIX file system, the directory's permissions have to do
+      channel.bind(UnixDomainSocketAddress.of(path));
+      return new CompileServer(channel, UnixDomainSocketAddress.of(path));
+    }
+    try {
+      Path bound = directory.resolve("socket");
+      channel.bind(UnixDomainSocketAddress.of(bound));
+      Files.setPosixFilePermissions(bound, PosixFilePermissions.fromString("rw-------"));
+      Files.move(bound, path, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    } finally {
+      Files.deleteIfExists(directory.resolve("socket"));
+      Files.delete(directory);
+    }
+    return new CompileServer(channel, UnixDomainSocketAddress.of(path));
+  }
+
+  private CompileServer(ServerSocketChannel server) throws IOException {
+    this(server, server.getLocalAddress());
+  }
+
+  private CompileServer(ServerSocketChannel server, SocketAddress address) {
+    this.server = server;
+    this.address = address;
+  }
+
+  /**
+   * Reports every error of each source, see Compiler.setErrorRecovery().
+   */
+  public void setErrorRecovery(boolean errorRecovery) {
+    this.errorRecovery = errorRecovery;
+  }
+
+  /**
+   * The largest SOURCE request accepted, in bytes. Each connection buffers
+   * up to this much at once.
+   */
+  public void setMaxSourceBytes(int maxSourceBytes) {
+    this.maxSourceBytes = maxSourceBytes;
+  }
+
+  /**
+   * Serves FILE requests for the files under root, a relative path being
+   * taken from root. Without a root FILE requests fail.
+   */
+  public void setFileRoot(Path root) throws IOException {
+    this.fileRoot = root.toRealPath();
+  }
+
+  public SocketAddress getAddress() {
+    return address;
+  }
+
+  /**
+   * Accepts connections until close() is called, serving each on its own
+   * worker thread.
+   */
+  public void serve() throws IOException {
+    while (server.isOpen()) {
+      SocketChannel connection;
+      try {
+        connection = server.accept();
+      } catch (IOException e) {
+        if (!server.isOpen()) break;  // closed while waiting
+        throw e;
+      }
+      workers.execute(() -> handle(connection));
+    }
+  }
+
+  public void close() throws IOException {
+    server.close();
+    workers.shutdown();
+  }
+
+  // ---------- Serving a connection ----------
+  private void handle(SocketChannel connection) {
+    try {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(connection)));
+      OutputStream out = new BufferedOutputStream(Channels.newOutputStream(connection));
+      String request;
+      while ((request = readLine(in)) != null) {
+        Compiler compiler;
+        int lastSpace = request.lastIndexOf(' ');
+        if (request.startsWith("FILE ")) {
+          String path = resolveFile(request.substring("FILE ".length()));
+          if (path == null) {
+            writeResponse(out, false, "", "No such file under the server's file root: "
+                + request + "\n");
+            continue;
+          }
+          compiler = new Compiler(path);
+        } else if (request.startsWith("SOURCE ") && lastSpace > "SOURCE ".length()) {
+          long byteCount = parseByteCount(request.substring(lastSpace + 1));
+          if (byteCount < 0 || byteCount > maxSourceBytes) {
+            // the source can't be skipped safely, so the connection ends here
+            writeResponse(out, false, "", "Bad source size, the limit is " + maxSourceBytes
+                + " bytes: " + request + "\n");
+            break;
+          }
+          byte[] bytes = new byte[(int) byteCount];
+          in.readFully(bytes);
+          String name = request.substring("SOURCE ".length(), lastSpace);
+          compiler = new Compiler(name, new String(bytes, StandardCharsets.UTF_8).toCharArray());
+        } else {
+          writeResponse(out, false, "", "Bad request: " + request + "\n");
+          break;
+        }
+        compiler.setErrorRecovery(errorRecovery);
+        compile(compiler, out);
+      }
+    } catch (IOException e) {
+      // the client went away or sent garbage, drop the connection
+    } finally {
+      try { connection.close(); } catch (IOException e) { /* already gone */ }
+    }
+  }
+
+  // the real path of the file a FILE request names, or null if it is not under fileRoot
+  private String resolveFile(String requested) {
+    if (fileRoot == null) return null;
+    try {
+      Path path = fileRoot.resolve(requested).toRealPath();
+      return path.startsWith(fileRoot) ? path.toString() : null;
+    } catch (IOException | InvalidPathException e) {
+      return null;
+    }
+  }
+
+  // the count of a SOURCE request, or -1 if it is not a number
+  private static long parseByteCount(String count) {
+    try {
+      return Long.parseLong(count);
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  private static void compile(Compiler compiler, OutputStream out) throws IOException {
+    String output;
+    StringBuilder errors = new StringBuilder();
+    try {
+      output = compiler.compile();
+      List<String> found = compiler.getErrors();
+      for (String error : found) {
+        errors.append(error).append('\n');
+      }
+    } catch (RuntimeException | StackOverflowError e) {
+      // an unreadable file, a compiler bug or a source nested too deeply
+      output = "";
+      errors.append(e).append('\n');
+    }
+    writeResponse(out, errors.length() == 0, output, errors.toString());
+  }
+
+  private static void writeResponse(OutputStream out, boolean ok, String output, String errors)
+      throws IOException {
+    byte[] outputBytes = output.getBytes(StandardCharsets.UTF_8);
+    byte[] errorBytes = errors.getBytes(StandardCharsets.UTF_8);
+    String status = (ok ? "OK " : "FAILED ") + outputBytes.length + " " + errorBytes.length + "\n";
+    out.write(status.getBytes(StandardCharsets.UTF_8));
+    out.write(outputBytes);
+    out.write(errorBytes);
+    out.flush();
+  }
+
+  /**
+   * Reads a '\n' terminated ASCII line, or returns null at the end of the
+   * stream. Shared with CompileClient.
+   */
+  static String readLine(InputStream in) throws IOException {
+    StringBuilder line = new StringBuilder();
+    int c;
+    while ((c = in.read()) != '\n') {
+      if (c < 0) {
+        if (line.length() == 0) return null;
+        throw new EOFException("Unterminated line: " + line);
+      }
+      if (line.length() == MAX_LINE_LENGTH) throw new IOException("Line too long");
+      line.append((char) c);
+    }
+    return line.toString();
+  }
+
+  // ---------- main() ----------
+  public static void main(String[] args) throws IOException {
+    String unixSocket = null;
+    int port = DEFAULT_PORT;
+    boolean errorRecovery = false;
+    int maxSourceBytes = DEFAULT_MAX_SOURCE_BYTES;
+    String fileRoot = null;
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-unix") && i + 1 < args.length) {
+        unixSocket = args[++i];
+      } else if (args[i].equals("-port") && i + 1 < args.length) {
+        port = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-recover")) {
+        errorRecovery = true;
+      } else if (args[i].equals("-maxSource") && i + 1 < args.length) {
+        maxSourceBytes = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-root") && i + 1 < args.length) {
+        fileRoot = args[++i];
+      } else {
+        System.out.println("Usage: java CompileServer [-port n | -unix socketPath] [-recover]"
+            + " [-maxSource bytes] [-root dir]");
+        System.exit(1);
+      }
+    }
+    CompileServer server = unixSocket != null ? onUnixSocket(Paths.get(unixSocket)) : onPort(port);
+    server.setErrorRecovery(errorRecovery);
+    server.setMaxSourceBytes(maxSourceBytes);
+    if (fileRoot != null) server.setFileRoot(Paths.get(fileRoot));
+    System.out.println("Compile server listening on " + server.getAddress());
+    server.serve();
+  }
+}
@@ -1,7 +1,12 @@
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.io.Writer;
+import java.util.List;
 
 /**
  * The main class of the compiler you will build.
@@ -18,34 +23,65 @@ public class Compiler {
   public static String studentID = "";
   public static String uciNetID = "";
 
+  // change whenever the output of compile() changes, it keys the
+  // CompilationCache entries
+  public static final String VERSION = "2";
+
+  private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+  // lower case token names for the token listing, made once
+  private static final String[] lowerCaseNames = new String[TokenKind.values().length];
+
+  static {
+    for (TokenKind kind : TokenKind.values())
+      lowerCaseNames[kind.ordinal()] = kind.toString().toLowerCase();
+  }
+
   private String sourceFilename;
+  // the source itself, if it was not read from sourceFilename
+  private char[] source;
+  // what the last compile() read and found
+  private int tokenCount;
+  private List<String> errors;
+  // keep compiling past errors, see Parser.setErrorRecovery()
+  private boolean errorRecovery;
 
   public Compiler(String sourceFilename) throws IOException {
     this.sourceFilename = sourceFilename;
   }
 
-  private String tokenToString(TokenKind token, Scanner scanner) {
-    if (token.defaultLexeme.length() == 0)
-      return token.toString().toLowerCase() + ":" + scanner.getLexeme();
-    else
-      return token.defaultLexeme;
+  /**
+   * Compiles an in-memory source instead of a file. sourceName is only
+   * used to name it. The array is not copied.
+   */
+  public Compiler(String sourceName, char[] source) {
+    this.sourceFilename = sourceName;
+    this.source = source;
+  }
+
+  /**
+   * Reports every error of the source in one compile() instead of stopping
+   * at the first. Off by default.
+   */
+  public void setErrorRecovery(boolean errorRecovery) {
+    this.errorRecovery = errorRecovery;
+  }
+
+  private Scanner newScanner() {
+    return source == null ? new Scanner(sourceFilename) : new Scanner(source, source.length);
   }
 
   /**
    * Lab 1: Returns a string listing all the tokens in the program.
    */
   private String computeTokens() {
-    StringBuilder sb = new StringBuilder();
-    Scanner scanner = new Scanner(sourceFilename);
-
-    TokenKind token = scanner.next();
-    while (token != TokenKind.EOF && token != TokenKind.ERROR) {
-      sb.append(tokenToString(token, scanner)).append("\n");
-      token = scanner.next();
+    StringWriter writer = new StringWriter();
+    try {
+      writeTokens(writer, false);
+    } catch (IOException e) {
+      throw new AssertionError(e);  // a StringWriter never throws
     }
-    sb.append(tokenToString(token, scanner)).append("\n");  // append the EOF or ERROR
-
-    return sb.toString();
+    return writer.toString();
   }
 
   /**
@@ -53,17 +89,77 @@ public class Compiler {
    *        char position) in the program.
    */
   private String computeFullTokens() {
-    StringBuilder sb = new StringBuilder();
-    Scanner scanner = new Scanner(sourceFilename);
+    StringWriter writer = new StringWriter();
+    try {
+      writeTokens(writer, true);
+    } catch (IOException e) {
+      throw new AssertionError(e);  // a StringWriter never throws
+    }
+    return writer.toString();
+  }
 
-    TokenKind token = scanner.next();
-    while (token != TokenKind.EOF && token != TokenKind.ERROR) {
-      sb.append(scanner).append("\n");
+  /**
+   * Writes the listing of computeTokens() to out as the source is scanned,
+   * so the whole listing is never held in memory. out is flushed, not closed.
+   */
+  public void writeTokens(Writer out) throws IOException {
+    writeTokens(out, false);
+  }
+
+  public void writeTokens(OutputStream out) throws IOException {
+    writeTokens(new OutputStreamWriter(out), false);
+  }
+
+  /**
+   * Writes the listing of computeFullTokens() to out as the source is
+   * scanned. out is flushed, not closed.
+   */
+  public void writeFullTokens(Writer out) throws IOException {
+    writeTokens(out, true);
+  }
+
+  public void writeFullTokens(OutputStream out) throws IOException {
+    writeTokens(new OutputStreamWriter(out), true);
+  }
+
+  private void writeTokens(Writer out, boolean full) throws IOException {
+    Writer buffered = new BufferedWriter(out, WRITE_BUFFER_SIZE);
+    Scanner scanner = newScanner();
+    char[] digits = new char[11];
+
+    TokenKind token;
+    do {  // up to and including the EOF or ERROR
       token = scanner.next();
-    }
-    sb.append(scanner).append("\n");  // append the EOF or ERROR
+      if (full) {
+        // same text as Scanner.toString()
+        buffered.write("(L");
+        writeInt(buffered, scanner.getLineNum(), digits);
+        buffered.write(" C");
+        writeInt(buffered, scanner.getCharPos(), digits);
+        buffered.write(") ");
+        buffered.write(token.toString());
+        scanner.writeLexeme(buffered);
+      } else if (token.defaultLexeme.length() == 0) {
+        // kind:lexeme for the tokens that have no fixed lexeme
+        buffered.write(lowerCaseNames[token.ordinal()]);
+        buffered.write(':');
+        scanner.writeLexeme(buffered);
+      } else {
+        buffered.write(token.defaultLexeme);
+      }
+      buffered.write('\n');
+    } while (token != TokenKind.EOF && token != TokenKind.ERROR);
+    buffered.flush();
+  }
 
-    return sb.toString();
+  // Writes a non-negative int without making a String for it
+  private static void writeInt(Writer out, int value, char[] digits) throws IOException {
+    int i = digits.length;
+    do {
+      digits[--i] = (char) ('0' + value % 10);
+      value /= 10;
+    } while (value > 0);
+    out.write(digits, i, digits.length - i);
   }
 
   /**
@@ -72,7 +168,7 @@ public class Compiler {
   private String computeParseTree() {
     Parser parser = new Parser(false);
     try {
-      parser.parse(sourceFilename);
+      parser.parse(newScanner());
     }
     catch (ParserException e) {/*System.out.println("ParserException: " + e.getMessage());*/}
 
@@ -89,8 +185,9 @@ public class Compiler {
    */
   private String computeSymbolTable() {
     Parser parser = new Parser();
+    parser.setParseTreeListener(null);
     try {
-      parser.parse(sourceFilename);
+      parser.parse(newScanner());
     } catch (ParserException e) {
     	e.getStackTrace();
       //System.out.println("ParserException: " + e.getMessage());
@@ -110,11 +207,16 @@ public class Compiler {
   
   private String computeSpimOutput() {
 	  Parser parser = new Parser();
+	  parser.setParseTreeListener(null);
+	  parser.setErrorRecovery(errorRecovery);
 	  try {
-	  parser.parse(sourceFilename);
+	  parser.parse(newScanner());
 	  } catch (ParserException e) {
-	  System.out.println("ParserException: " + e.getMessage());
+	  // stderr: the batch and server threads share stdout; getErrors() has it too
+	  System.err.println("ParserException: " + e.getMessage());
 	  }
+	  tokenCount = parser.getTokenCount();
+	  errors = parser.getErrors();
 
 	  // Print program
 	  StringWriter writer = new StringWriter();
@@ -135,4 +237,18 @@ public class Compiler {
 	//System.out.println(output);
 	return output;
   }
+
+  /**
+   * Returns the number of tokens read by the last compile().
+   */
+  public int getTokenCount() {
+    return tokenCount;
+  }
+
+  /**
+   * Returns the errors found by the last compile(), empty if it succeeded.
+   */
+  public List<String> getErrors() {
+    return errors;
+  }
 }
@@ -0,0 +1,198 @@
+import java.util.Arrays;
+
+/**
+ * A symbol table kept as one flat stack of entries plus a stack of scope
+ * marks (a "display"), instead of a chain of per-scope maps.
+ *
+ * Each name id and namespace has a head: the newest entry for it still in
+ * scope. Every entry links to the one it shadows. getSymbol() is then one
+ * array read however deep the scopes are nested, and exitScope() pops only
+ * the entries its scope added, putting back what they shadowed. Name ids
+ * are small and dense, so the heads are indexed by the key directly rather
+ * than hashed.
+ *
+ * addSymbol(), getSymbol(), newScope() and exitScope() behave as they do in
+ * SymbolTable, but there is only ever the one object: an exited scope is
+ * gone, so nothing may hold on to a scope to look in it later.
+ */
+public class FlatSymbolTable
+{
+
+	/* the entries in scope, outermost first */
+	private Symbol[] symbols;
+	/* key of each entry */
+	private int[] keys;
+	/* entry each entry shadows, or -1 */
+	private int[] shadowed;
+	/* scope depth each entry was added at */
+	private int[] depths;
+	private int size;
+
+	/* newest entry in scope for each key, or -1 */
+	private int[] heads;
+
+	/* first entry of each scope entered, by depth - 1 */
+	private int[] scopeMarks;
+	private int depth;
+
+	/* names shared by every scope of the table */
+	private NamePool names;
+
+	public FlatSymbolTable()
+	{
+		this(new NamePool());
+	}
+
+	public FlatSymbolTable(NamePool names)
+	{
+		this.names = names;
+		symbols = new Symbol[64];
+		keys = new int[64];
+		shadowed = new int[64];
+		depths = new int[64];
+		heads = new int[128];
+		Arrays.fill(heads, -1);
+		scopeMarks = new int[16];
+	}
+
+	/**
+	 * Tries to add the Symbol s to the current scope. Returns true on success
+	 * or false if the current scope already has a symbol of that name and
+	 * namespace; a symbol of an enclosing scope is shadowed.
+	 */
+	public boolean addSymbol(Symbol s)
+	{
+		int key = key(nameId(s), s.getKind());
+		if(key >= heads.length)
+		{
+			int oldLength = heads.length;
+			heads = Arrays.copyOf(heads, Math.max(key + 1, oldLength * 2));
+			Arrays.fill(heads, oldLength, heads.length, -1);
+		}
+		int head = heads[key];
+		if(head >= 0 && depths[head] == depth) { return false; }
+
+		if(size == symbols.length)
+		{
+			symbols = Arrays.copyOf(symbols, size * 2);
+			keys = Arrays.copyOf(keys, size * 2);
+			shadowed = Arrays.copyOf(shadowed, size * 2);
+			depths = Arrays.copyOf(depths, size * 2);
+		}
+		symbols[size] = s;
+		keys[size] = key;
+		shadowed[size] = head;
+		depths[size] = depth;
+		heads[key] = size++;
+		return true;
+	}
+
+	/**
+	 * Returns the symbol with the given name and kind in the current scope
+	 * or an enclosing one, or null if such a symbol does not exist.
+	 */
+	public Symbol getSymbol(String name, Symbol.Kind kind)
+	{
+		int nameId = names.lookup(name);
+		if(nameId < 0) { return null; }
+		return getSymbol(nameId, kind);
+	}
+
+	/**
+	 * Same as getSymbol(String, Kind) for a name already interned in the
+	 * NamePool, e.g. the id of an IDENT token
+	 */
+	public Symbol getSymbol(int nameId, Symbol.Kind kind)
+	{
+		int key = key(nameId, kind);
+		if(key >= heads.length || heads[key] < 0) { return null; }
+		return symbols[heads[key]];
+	}
+
+	/**
+	 * The id of s's name in this table's NamePool. The id cached on s may
+	 * have come from another pool, so it is only used if it names the same
+	 * string here; a foreign id is left on s as it is.
+	 */
+	private int nameId(Symbol s)
+	{
+		int id = s.getNameId();
+		if(id >= 0 && id < names.size() && names.getName(id).equals(s.getName()))
+		{
+			return id;
+		}
+		id = names.intern(s.getName());
+		if(s.getNameId() < 0) { s.setNameId(id); }
+		return id;
+	}
+
+	public NamePool getNamePool()
+	{
+		return names;
+	}
+
+	// the number of scopes entered and not yet exited
+	public int getDepth()
+	{
+		return depth;
+	}
+
+	/**
+	 * Enters a new scope, inside the current one. Returns this table, so it
+	 * can stand in for SymbolTable.newScope().
+	 */
+	public FlatSymbolTable newScope()
+	{
+		if(depth == scopeMarks.length)
+		{
+			scopeMarks = Arrays.copyOf(scopeMarks, depth * 2);
+		}
+		scopeMarks[depth++] = size;
+		return this;
+	}
+
+	/**
+	 * Deletes the symbols of the current scope and returns to the enclosing
+	 * one. Returns this table, or null, like SymbolTable, at the outermost
+	 * scope.
+	 */
+	public FlatSymbolTable exitScope()
+	{
+		if(depth == 0) { return null; }
+		int mark = scopeMarks[--depth];
+		while (size > mark)
+		{
+			size--;
+			heads[keys[size]] = shadowed[size];
+			symbols[size] = null;
+		}
+		return this;
+	}
+
+	@Override
+	public String toString()
+	{
+		/**
+		 * Same as SymbolTable: the outermost scope first, each symbol behind
+		 * an arrow per scope it is nested in. Entries are kept in that order
+		 * already.
+		 */
+		StringBuilder res = new StringBuilder(
+				"***** Symbol Table Contents *****\n");
+		for (int i = 0; i < size; i++)
+		{
+			for (int d = 0; d < depths[i]; d++)
+			{
+				res.append("-->");
+			}
+			res.append(symbols[i]).append('\n');
+		}
+		return res.toString();
+	}
+
+	// the lowest bit of the key holds the namespace, as in SymbolTable
+	private static int key(int nameId, Symbol.Kind kind)
+	{
+		return kind == Symbol.Kind.PROCEDURE ? (nameId << 1) | 1 : nameId << 1;
+	}
+}
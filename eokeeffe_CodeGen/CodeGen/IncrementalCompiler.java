@@ -0,0 +1,208 @@
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.List;
+
+/**
+ * Compiles a program, then new versions of it, parsing, checking and
+ * generating code again only for the top-level procedure bodies that
+ * changed.
+ *
+ * A version is compiled incrementally when the last one compiled without
+ * errors and everything outside the top-level procedure bodies (the global
+ * declarations, the procedure headers, and so the signatures in the
+ * SymbolTable, and main) is token for token the same. The code of each
+ * changed body replaces its old code in the last output, which is then what
+ * a full compile would give, apart from the label numbers once a body needs
+ * more labels than it had. In every other case, or if a changed body now
+ * has an error or leaves other registers in use for the code after it, the
+ * whole program is compiled again.
+ */
+public class IncrementalCompiler {
+
+  private String sourceName;
+  private char[] source;
+  private Parser parser;
+  private TokenBuffer tokens;
+  // [first token, "}") of each top-level procedure body, as pairs
+  private int[] bodies;
+  // false if the parser and findBodies() disagree on where the bodies are
+  private boolean canUpdate;
+
+  private boolean incremental;
+  private int reparsedBodies;
+
+  /**
+   * Compiles the first version of a program. The array is not copied.
+   */
+  public IncrementalCompiler(String sourceName, char[] source) {
+    this.sourceName = sourceName;
+    compileAll(source);
+  }
+
+  /**
+   * Compiles a new version of the program. The array is not copied.
+   */
+  public void update(char[] newSource) {
+    incremental = false;
+    reparsedBodies = 0;
+    if (canUpdate && parser.getErrors().isEmpty() && updateBodies(newSource)) {
+      incremental = true;
+    } else {
+      compileAll(newSource);
+    }
+  }
+
+  // Returns the SPIM output of the current version
+  public String getOutput() {
+    StringWriter writer = new StringWriter();
+    parser.getCodeGenerator().dumpProgram(new PrintWriter(writer));
+    return writer.toString();
+  }
+
+  public List<String> getErrors() {
+    return parser.getErrors();
+  }
+
+  // false if the last update compiled the whole program
+  public boolean wasIncremental() {
+    return incremental;
+  }
+
+  // the number of bodies the last incremental update parsed again
+  public int getReparsedBodies() {
+    return reparsedBodies;
+  }
+
+  public String getSourceName() {
+    return sourceName;
+  }
+
+  // ---------- Compiling ----------
+  private void compileAll(char[] newSource) {
+    source = newSource;
+    parser = new Parser();
+    parser.setParseTreeListener(null);
+    parser.setTokenBuffering(true);
+    parser.setRecordBodies(true);
+    try {
+      parser.parse(new Scanner(source, source.length));
+    } catch (ParserException e) {
+      // reported in getErrors()
+    }
+    tokens = parser.getTokenBuffer();
+    bodies = findBodies(tokens);
+
+    List<Parser.ProcedureBody> recorded = parser.getProcedureBodies();
+    canUpdate = recorded.size() * 2 == bodies.length;
+    for (int i = 0; canUpdate && i < recorded.size(); i++) {
+      canUpdate = recorded.get(i).firstToken == bodies[2 * i]
+          && recorded.get(i).endToken == bodies[2 * i + 1];
+    }
+  }
+
+  // Returns false if the new version can't be compiled incrementally
+  private boolean updateBodies(char[] newSource) {
+    Scanner scanner = new Scanner(newSource, newSource.length);
+    scanner.setNamePool(parser.getSymbolTable().getNamePool());
+    TokenBuffer newTokens = scanner.bufferTokens();
+    int[] newBodies = findBodies(newTokens);
+    if (newBodies.length != bodies.length) {
+      return false;
+    }
+
+    // everything between the bodies must be the same
+    int from = 0;
+    int newFrom = 0;
+    for (int i = 0; i <= bodies.length; i += 2) {
+      int to = i < bodies.length ? bodies[i] : tokens.size();
+      int newTo = i < bodies.length ? newBodies[i] : newTokens.size();
+      if (!sameTokens(from, to, newSource, newTokens, newFrom, newTo)) {
+        return false;
+      }
+      if (i < bodies.length) {
+        from = bodies[i + 1];
+        newFrom = newBodies[i + 1];
+      }
+    }
+
+    List<Parser.ProcedureBody> recorded = parser.getProcedureBodies();
+    for (int i = 0; i < bodies.length; i += 2) {
+      if (sameTokens(bodies[i], bodies[i + 1], newSource, newTokens, newBodies[i], newBodies[i + 1])) {
+        recorded.get(i / 2).firstToken = newBodies[i];
+        recorded.get(i / 2).endToken = newBodies[i + 1];
+      } else if (parser.reparseBody(scanner, recorded.get(i / 2), newBodies[i], newBodies[i + 1])) {
+        reparsedBodies++;
+      } else {
+        return false;
+      }
+    }
+    source = newSource;
+    tokens = newTokens;
+    bodies = newBodies;
+    return true;
+  }
+
+  // Compares tokens [from, to) of the current version with [newFrom, newTo)
+  // of the new one
+  private boolean sameTokens(int from, int to, char[] newSource, TokenBuffer newTokens,
+      int newFrom, int newTo) {
+    if (to - from != newTo - newFrom) return false;
+    for (int i = from, j = newFrom; i < to; i++, j++) {
+      if (tokens.getTokenKind(i) != newTokens.getTokenKind(j)) return false;
+      int length = tokens.getLexemeLength(i);
+      if (newTokens.getLexemeLength(j) != length) return false;
+      int start = tokens.getLexemeStart(i);
+      int newStart = newTokens.getLexemeStart(j);
+      for (int k = 0; k < length; k++) {
+        if (source[start + k] != newSource[newStart + k]) return false;
+      }
+    }
+    return true;
+  }
+
+  // ---------- Finding the bodies ----------
+  /**
+   * Returns the token ranges of the top-level procedure bodies, from the
+   * token after the "{" to its "}", as pairs. A procedure starts with a
+   * retType, an IDENT and a "(" outside any braces.
+   */
+  static int[] findBodies(TokenBuffer tokens) {
+    int[] found = new int[16];
+    int count = 0;
+    int depth = 0;
+    for (int i = 0; i < tokens.size(); i++) {
+      TokenKind kind = tokens.getTokenKind(i);
+      if (kind == TokenKind.L_BRACE) {
+        depth++;
+      } else if (kind == TokenKind.R_BRACE) {
+        depth--;
+      } else if (depth == 0 && NonTerminal.RET_TYPE.inFirstSet(kind) && i + 2 < tokens.size()
+          && tokens.getTokenKind(i + 1) == TokenKind.IDENT
+          && tokens.getTokenKind(i + 2) == TokenKind.L_PAREN) {
+        int open = i + 3;
+        while (open < tokens.size() && tokens.getTokenKind(open) != TokenKind.L_BRACE) open++;
+        int close = matchingBrace(tokens, open);
+        if (close < 0) break;  // unterminated, it can't have parsed
+        if (count == found.length) found = java.util.Arrays.copyOf(found, count * 2);
+        found[count++] = open + 1;
+        found[count++] = close;
+        i = close;
+      }
+    }
+    return java.util.Arrays.copyOf(found, count);
+  }
+
+  // -1 if the "{" at open is never closed
+  private static int matchingBrace(TokenBuffer tokens, int open) {
+    int depth = 0;
+    for (int i = open; i < tokens.size(); i++) {
+      TokenKind kind = tokens.getTokenKind(i);
+      if (kind == TokenKind.L_BRACE) {
+        depth++;
+      } else if (kind == TokenKind.R_BRACE && --depth == 0) {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
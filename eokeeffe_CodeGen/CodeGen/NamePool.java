@@ -0,0 +1,110 @@
+
+import java.util.Arrays;
+
+/**
+ * Interns the identifiers of one compilation.
+ *
+ * Every distinct name is given a small integer id and a single canonical
+ * String. The Scanner interns identifiers straight from the source buffer,
+ * and the SymbolTable and CodeGen key on the id, so a name that is used a
+ * thousand times is only ever stored once.
+ */
+public class NamePool {
+
+  private String[] names;
+  private int[] hashes;
+  private int size;
+
+  // open addressing table of id + 1 (0 == empty slot)
+  private int[] slots;
+
+  public NamePool() {
+    names = new String[64];
+    hashes = new int[64];
+    slots = new int[128];
+  }
+
+  /**
+   * Returns the id of name, adding it to the pool if it is not there yet.
+   */
+  public int intern(String name) {
+    int hash = name.hashCode();
+    int mask = slots.length - 1;
+    for (int i = hash & mask; ; i = (i + 1) & mask) {
+      int id = slots[i] - 1;
+      if (id < 0) return add(i, name, hash);
+      if (hashes[id] == hash && names[id].equals(name)) return id;
+    }
+  }
+
+  /**
+   * Returns the id of the name spelled by chars[start, end), adding it to
+   * the pool if it is not there yet. No String is built for names that are
+   * already in the pool.
+   */
+  public int intern(char[] chars, int start, int end) {
+    int hash = 0;
+    for (int i = start; i < end; i++) hash = 31 * hash + chars[i];
+
+    int mask = slots.length - 1;
+    for (int i = hash & mask; ; i = (i + 1) & mask) {
+      int id = slots[i] - 1;
+      if (id < 0) return add(i, new String(chars, start, end - start), hash);
+      if (hashes[id] == hash && sameChars(names[id], chars, start, end)) return id;
+    }
+  }
+
+  /**
+   * Returns the id of name, or -1 if it has never been interned.
+   */
+  public int lookup(String name) {
+    int hash = name.hashCode();
+    int mask = slots.length - 1;
+    for (int i = hash & mask; ; i = (i + 1) & mask) {
+      int id = slots[i] - 1;
+      if (id < 0) return -1;
+      if (hashes[id] == hash && names[id].equals(name)) return id;
+    }
+  }
+
+  public String getName(int id) {
+    return names[id];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  private int add(int slot, String name, int hash) {
+    if (size == names.length) {
+      names = Arrays.copyOf(names, size * 2);
+      hashes = Arrays.copyOf(hashes, size * 2);
+    }
+    int id = size++;
+    names[id] = name;
+    hashes[id] = hash;
+    slots[slot] = id + 1;
+
+    // keep the table at most half full
+    if (size * 2 > slots.length) rehash();
+    return id;
+  }
+
+  private void rehash() {
+    slots = new int[slots.length * 2];
+    int mask = slots.length - 1;
+    for (int id = 0; id < size; id++) {
+      int i = hashes[id] & mask;
+      while (slots[i] != 0) i = (i + 1) & mask;
+      slots[i] = id + 1;
+    }
+  }
+
+  private static boolean sameChars(String name, char[] chars, int start, int end) {
+    if (name.length() != end - start) return false;
+    for (int i = 0; i < name.length(); i++) {
+      if (name.charAt(i) != chars[start + i]) return false;
+    }
+    return true;
+  }
+}
@@ -2,6 +2,7 @@
 public class Node
 {
 	private String name;
+	private int nameId = -1;
 	private Type type;
 	
 	public Node(Type t)
@@ -15,11 +16,22 @@ public class Node
 		type = t;
 	}
 	
+	public Node(String lexeme, int nameId, Type t)
+	{
+		this(lexeme, t);
+		this.nameId = nameId;
+	}
+	
 	public String getTokenName()
 	{
 		return name;
 	}
 	
+	public int getNameId()
+	{
+		return nameId;
+	}
+	
 	public Type getType()
 	{
 		return type;
@@ -114,9 +114,30 @@ public enum NonTerminal {
 
   public final String name;
   public final Set<TokenKind> firstSet;
+  // firstSet as a bitmask over TokenKind.ordinal(), for one AND per test
+  public final long firstMask;
 
   NonTerminal(String name, Set<TokenKind> firstSet) {
     this.name = name;
     this.firstSet = firstSet;
+    this.firstMask = mask(firstSet);
+  }
+
+  public boolean inFirstSet(TokenKind kind) {
+    return (firstMask & bit(kind)) != 0;
+  }
+
+  public static long bit(TokenKind kind) {
+    return 1L << kind.ordinal();
+  }
+
+  public static long mask(Set<TokenKind> kinds) {
+    long mask = 0;
+    for (TokenKind kind : kinds) {
+      // there are fewer than 64 token kinds, so every kind has a bit
+      if (kind.ordinal() >= Long.SIZE) throw new AssertionError(kind + " does not fit in a long");
+      mask |= bit(kind);
+    }
+    return mask;
   }
 }
@@ -0,0 +1,11 @@
+
+/**
+ * Receives the nonterminals of the parse tree as the Parser enters and
+ * leaves them. depth is the nesting depth of the rule, 1 for program.
+ */
+public interface ParseTreeListener {
+
+  void enterRule(NonTerminal nt, int depth);
+
+  void exitRule(NonTerminal nt, int depth);
+}
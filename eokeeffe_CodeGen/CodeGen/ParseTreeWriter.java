@@ -0,0 +1,34 @@
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Writes the parse tree in the format of Parser.getParseTree() as it is
+ * parsed: one nonterminal per line, indented three spaces per level.
+ * Nothing is buffered, so out should be buffered if it is a file.
+ */
+public class ParseTreeWriter implements ParseTreeListener {
+
+  private static final String INDENT = "   ";
+
+  private Appendable out;
+
+  public ParseTreeWriter(Appendable out) {
+    this.out = out;
+  }
+
+  @Override
+  public void enterRule(NonTerminal nt, int depth) {
+    try {
+      for (int i = 0; i < depth; i++)
+        out.append(INDENT);
+      out.append(nt.name).append('\n');
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public void exitRule(NonTerminal nt, int depth) {
+  }
+}
@@ -1,10 +1,10 @@
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.ListIterator;
 
 public class Parser {
 	public enum ErrorType {
@@ -17,34 +17,168 @@ public class Parser {
 	public static final String ERR_MISMATCH_INVALID_OP = "Invalid operator usage: ";
 	public static final String ERR_MISMATCH_INVALID_REF = "Invalid array reference: ";
 	public static final String ERR_MISMATCH_INVALID_CALL = "Invalid call: ";
-	protected static Scanner scanner;
-	private static SymbolTable symbolTable;
+	protected Scanner scanner;
+	private SymbolTable symbolTable;
 	private StringBuilder parseTreeBuffer;
 	private int recursionDepth;
-	private static List<String> errors;
-	private static boolean doSemanticChecks;
+	// gets the parse tree; by default it is recorded into parseTreeBuffer
+	private ParseTreeListener parseTreeListener;
+	private boolean recordParseTree = true;
+	private List<String> errors;
+	private boolean doSemanticChecks;
+	// lex the whole file into a TokenBuffer before parsing
+	private boolean bufferTokens;
 	// get the token for the current procedure
-	protected static Token sym;
-	// for doing deep expr checking with strings,final check on main for return
-	// type
-	protected static boolean stringPresent = false, io = false,
-			mainReturn = false;
-	protected static CodeGen codeGen;
+	protected Token sym;
+	// sym as a token index (-1 == none yet), when building a compact tree
+	private int symToken;
+	// final check on main for return type
+	protected boolean mainReturn;
+	protected CodeGen codeGen;
+	// the passes run over each declaration and statement as it is parsed
+	private TypeChecker typeChecker;
+	private CodeGenerator codeGenerator;
+	// tree of the program, set once it has been parsed
+	private Ast.Program program;
+	// build the tree packed into an AstArena instead of as Ast objects
+	private boolean compactTree;
+	private AstArena programArena;
+	// the AstArena being built, or null when building Ast objects
+	private AstArena tree;
+	// identifiers shared by the scanner, symbol table and code generator
+	protected NamePool names;
+	// skip past a bad statement or declaration and keep parsing
+	private boolean errorRecovery;
+	private int maxErrors = DEFAULT_MAX_ERRORS;
+	// "{" accepted and not closed yet, so recover() can skip whole blocks
+	private int openBraces;
+	public static final int DEFAULT_MAX_ERRORS = 100;
+	// symbols of each scope shown in an error's symbol table
+	private int errorSymbolLimit = DEFAULT_ERROR_SYMBOL_LIMIT;
+	public static final int DEFAULT_ERROR_SYMBOL_LIMIT = 500;
+	// what IncrementalCompiler needs to parse bodies again
+	private boolean recordBodies;
+	private List<ProcedureBody> procedureBodies;
+	private TokenBuffer tokenBuffer;
+	private int procedureNesting;
+
+	/**
+	 * Where a top-level procedure body sits in the tokens and the generated
+	 * code, and the scopes it was parsed in, so that it can be parsed again
+	 * on its own, see reparseBody().
+	 */
+	static class ProcedureBody {
+		Symbol procedure;
+		Token name;
+		int index; // in the program's procedures
+		int firstToken; // the token after the "{"
+		int endToken; // the "}"
+		int codeStart, codeEnd;
+		int dataStart, dataEnd;
+		int labelStart, labelEnd;
+		// the registers in use before and after, which the code after the
+		// body depends on
+		boolean[] registersStart, registersEnd;
+		// the global scope and the procedure's own, with their sizes when
+		// the body started
+		SymbolTable global, scope;
+		int globalSize, scopeSize;
+		int depth;
+	}
 
 	public Parser(boolean doSemanticChecks) {
-		Parser.doSemanticChecks = doSemanticChecks;
+		this.doSemanticChecks = doSemanticChecks;
 	}
 
 	public Parser() {
 		this(true);
 	}
 
+	public void setTokenBuffering(boolean bufferTokens) {
+		this.bufferTokens = bufferTokens;
+	}
+
+	/**
+	 * Keeps the token buffer and a ProcedureBody for each top-level
+	 * procedure. Needs token buffering.
+	 */
+	void setRecordBodies(boolean recordBodies) {
+		this.recordBodies = recordBodies;
+	}
+
+	/**
+	 * Builds the tree straight into an AstArena, see getProgramArena(), and
+	 * runs the passes over it, instead of building Ast objects. Buffers the
+	 * tokens, which the arena refers to by index.
+	 */
+	public void setCompactTree(boolean compactTree) {
+		this.compactTree = compactTree;
+	}
+
+	/**
+	 * With error recovery on, a syntax or semantic error inside a statement
+	 * or declaration is recorded and the parser skips ahead to the next
+	 * statement or declaration instead of giving up, so one parse reports
+	 * every error in getErrors(). parse() then only throws for an error it
+	 * cannot recover from (one in a procedure or main header, at the end of
+	 * the file, or past the maxErrors limit); otherwise a non-empty
+	 * getErrors() is the sign the program did not compile. Off by default.
+	 */
+	public void setErrorRecovery(boolean errorRecovery) {
+		this.errorRecovery = errorRecovery;
+	}
+
+	public void setMaxErrors(int maxErrors) {
+		this.maxErrors = maxErrors;
+	}
+
+	/**
+	 * Every error message ends with the symbol table; only the first limit
+	 * symbols of each scope are written, so errors in a huge program stay
+	 * cheap to report.
+	 */
+	public void setErrorSymbolLimit(int limit) {
+		this.errorSymbolLimit = limit;
+	}
+
+	/**
+	 * Sends the parse tree to listener instead of recording it for
+	 * getParseTree(). With a null listener the tree is not built at all.
+	 */
+	public void setParseTreeListener(ParseTreeListener listener) {
+		parseTreeListener = listener;
+		recordParseTree = false;
+	}
+
 	public void parse(String sourceFilename) throws ParserException {
+		parse(new Scanner(sourceFilename));
+	}
+
+	/**
+	 * Parses the source of a new Scanner, such as one over an in-memory
+	 * source. The parser gives the scanner its own NamePool.
+	 */
+	public void parse(Scanner sourceScanner) throws ParserException {
 		// (Re-)initialize fields
-		parseTreeBuffer = new StringBuilder();
+		if (recordParseTree) {
+			parseTreeBuffer = new StringBuilder();
+			parseTreeListener = new ParseTreeWriter(parseTreeBuffer);
+		}
 		recursionDepth = 1; // to match test cases, should really be 0
 		errors = new ArrayList<String>();
-		scanner = new Scanner(sourceFilename);
+		mainReturn = false;
+		symToken = -1;
+		program = null;
+		programArena = null;
+		procedureBodies = recordBodies ? new ArrayList<ProcedureBody>() : null;
+		procedureNesting = 0;
+		openBraces = 0;
+		names = new NamePool();
+		scanner = sourceScanner;
+		scanner.setNamePool(names);
+		tokenBuffer = bufferTokens || compactTree ? scanner.bufferTokens()
+				: null;
+		tree = compactTree ? new AstArena(tokenBuffer) : null;
 		scanner.next();
 		initCodeGenerator();
 		initSymbolTable();
@@ -54,7 +188,9 @@ public class Parser {
 
 	private void initCodeGenerator() {
 		// create a new mips code generator
-		codeGen = new CodeGen();
+		codeGen = new CodeGen(names);
+		codeGenerator = new CodeGenerator(codeGen);
+		typeChecker = new TypeChecker(this);
 	}
 
 	// ---------- Methods for managing parse tree ----------
@@ -62,24 +198,29 @@ public class Parser {
 		if (!have(nt)) {
 			printError(nt);
 		}
-		StringBuilder lineData = new StringBuilder();
-		for (int i = 0; i < recursionDepth; i++)
-			lineData.append("   ");
-		lineData.append(nt.name);
-		parseTreeBuffer.append(lineData).append("\n");
+		if (parseTreeListener != null) {
+			parseTreeListener.enterRule(nt, recursionDepth);
+		}
 		recursionDepth++;
 	}
 
 	private void exitRule(NonTerminal nt) {
 		recursionDepth--;
+		if (parseTreeListener != null) {
+			parseTreeListener.exitRule(nt, recursionDepth);
+		}
 	}
 
+	/**
+	 * Returns the parse tree of the last parse, or an empty string if it was
+	 * sent to a listener instead.
+	 */
 	public String getParseTree() {
-		return parseTreeBuffer.toString();
+		return recordParseTree ? parseTreeBuffer.toString() : "";
 	}
 
 	// ---------- Methods for error reporting ----------
-	private static void addTestCaseErrorMessage() {
+	private void addTestCaseErrorMessage() {
 		// For comparing output: please use this format as it will be used to
 		// compare output results.
 		if (doSemanticChecks) {
@@ -95,7 +236,7 @@ public class Parser {
 			errorMessage.append("\n");
 			errorMessage.append("Error Found on Line Number: ")
 					.append(scanner.getLineNum()).append("\n");
-			errorMessage.append(symbolTable);
+			appendSymbolTable(errorMessage);
 			errors.add(errorMessage.toString());
 		} else {
 			errors.add("Error: " + scanner.getTokenKind() + "  "
@@ -103,7 +244,7 @@ public class Parser {
 		}
 	}
 
-	protected static void printError(TokenKind expectedToken)
+	protected void printError(TokenKind expectedToken)
 			throws ParserException {
 		// We are terminating the parse here, but better compilers will do error
 		// recovery and keep going to find more syntax errors.
@@ -123,12 +264,12 @@ public class Parser {
 				errorMessage);
 	}
 
-	protected static void printError(ErrorType error, Token tokenName)
+	protected void printError(ErrorType error, Token tokenName)
 			throws ParserException {
 		printError(error, tokenName, null);
 	}
 
-	protected static void printError(ErrorType errorType, Token nameToken,
+	protected void printError(ErrorType errorType, Token nameToken,
 			String message) throws ParserException {
 		String errorMessage = "SEMANTIC ERROR: " + errorType + " on symbol "
 				+ nameToken.getLexeme();
@@ -141,19 +282,27 @@ public class Parser {
 		if (message != null) {
 			outputError.append(message).append("\n");
 		}
-		outputError.append(symbolTable);
+		appendSymbolTable(outputError);
 		errors.add(outputError.toString());
 		throw new ParserException(nameToken.getLineNum(),
 				nameToken.getCharPos(), errorMessage);
 	}
 
+	private void appendSymbolTable(StringBuilder message) {
+		try {
+			symbolTable.writeTo(message, errorSymbolLimit);
+		} catch (IOException e) {
+			throw new AssertionError(e); // a StringBuilder never throws
+		}
+	}
+
 	public List<String> getErrors() {
 		return errors;
 	}
 
 	// ---------- Symbol Table management methods ----------
 	private void initSymbolTable() {
-		symbolTable = new SymbolTable();
+		symbolTable = new SymbolTable(names);
 		// add the following symbols to the init table
 		symbolTable.addSymbol(Symbol.newTypeSymbol("int"));
 		symbolTable.addSymbol(Symbol.newTypeSymbol("char"));
@@ -168,19 +317,74 @@ public class Parser {
 		}
 	}
 
-	protected static Symbol tryResolveSymbol(Token nameToken, Symbol.Kind kind)
+	protected Symbol tryResolveSymbol(Token nameToken, Symbol.Kind kind)
 			throws ParserException {
-		Symbol temp = symbolTable.getSymbol(nameToken.getLexeme(), kind);
+		// with error recovery on, only the procedure of a return in main may
+		// be missing; a null symbol anywhere else would crash the passes
+		return tryResolveSymbol(nameToken, kind, !mainReturn || errorRecovery);
+	}
+
+	private Symbol tryResolveSymbol(Token nameToken, Symbol.Kind kind,
+			boolean reportUndefined) throws ParserException {
+		Symbol temp = nameToken.getNameId() >= 0
+				? symbolTable.getSymbol(nameToken.getNameId(), kind)
+				: symbolTable.getSymbol(nameToken.getLexeme(), kind);
 		if (temp != null) {
 			return temp;
 		} else {
-			if (!mainReturn) {
+			if (reportUndefined) {
 				printError(ErrorType.UNDEFINED_ERROR, nameToken);
 			}
 			return null;
 		}
 	}
 
+	/**
+	 * Resolves the IDENT at the scanner and moves past it, like
+	 * expectRetrieve() and tryResolveSymbol(), for a name whose token is not
+	 * kept. The token is only made if there is an error to report.
+	 */
+	private Symbol expectSymbol(Symbol.Kind kind) throws ParserException {
+		if (!have(TokenKind.IDENT)) {
+			printError(TokenKind.IDENT);
+		}
+		int nameId = scanner.getNameId();
+		Symbol temp = nameId >= 0 ? symbolTable.getSymbol(nameId, kind)
+				: symbolTable.getSymbol(scanner.getLexeme(), kind);
+		if (temp == null && (!mainReturn || errorRecovery)) {
+			Token ident = scanner.getToken();
+			scanner.next();
+			printError(ErrorType.UNDEFINED_ERROR, ident);
+		}
+		scanner.next();
+		return temp;
+	}
+
+	// The same for the buffered token at index token
+	private Symbol tryResolveSymbol(int token, Symbol.Kind kind)
+			throws ParserException {
+		return tryResolveSymbol(token, kind, !mainReturn || errorRecovery);
+	}
+
+	private Symbol tryResolveSymbol(int token, Symbol.Kind kind,
+			boolean reportUndefined) throws ParserException {
+		if (token < 0) {
+			return null; // a return in main before any name
+		}
+		int nameId = tokenBuffer.getNameId(token);
+		Symbol temp = nameId >= 0 ? symbolTable.getSymbol(nameId, kind)
+				: symbolTable.getSymbol(tokenBuffer.getLexeme(token), kind);
+		if (temp == null && reportUndefined) {
+			printError(ErrorType.UNDEFINED_ERROR, tokenBuffer.getToken(token));
+		}
+		return temp;
+	}
+
+	// the number of tokens read by the last parse
+	public int getTokenCount() {
+		return scanner.getTokenCount();
+	}
+
 	public SymbolTable getSymbolTable() {
 		return symbolTable;
 	}
@@ -205,16 +409,21 @@ public class Parser {
 	}
 
 	// ---------- Helper methods ----------
-	private static boolean have(TokenKind tokenKind) {
+	private boolean have(TokenKind tokenKind) {
 		return scanner.getTokenKind() == tokenKind;
 	}
 
 	private boolean have(NonTerminal nt) {
-		return nt.firstSet.contains(scanner.getTokenKind());
+		return (nt.firstMask & NonTerminal.bit(scanner.getTokenKind())) != 0;
 	}
 
-	protected static boolean accept(TokenKind tokenKind) {
+	protected boolean accept(TokenKind tokenKind) {
 		if (have(tokenKind)) {
+			if (tokenKind == TokenKind.L_BRACE) {
+				openBraces++;
+			} else if (tokenKind == TokenKind.R_BRACE) {
+				openBraces--;
+			}
 			scanner.next();
 			return true;
 		}
@@ -229,7 +438,7 @@ public class Parser {
 		return false;
 	}
 
-	protected static boolean expect(TokenKind tokenKind) throws ParserException {
+	protected boolean expect(TokenKind tokenKind) throws ParserException {
 		if (accept(tokenKind))
 			return true;
 		printError(tokenKind);
@@ -244,7 +453,7 @@ public class Parser {
 		return false;
 	}
 
-	protected static Token expectRetrieve(TokenKind tokenKind)
+	protected Token expectRetrieve(TokenKind tokenKind)
 			throws ParserException {
 		Token res = scanner.getToken();
 		expect(tokenKind);
@@ -257,313 +466,493 @@ public class Parser {
 		return res;
 	}
 
+	// The same, returning the index of the buffered token
+	private int expectIndex(TokenKind tokenKind) throws ParserException {
+		int res = scanner.getTokenIndex();
+		expect(tokenKind);
+		return res;
+	}
+
+	/**
+	 * Returns the operator token at the scanner, for the Ast node of an
+	 * operator whose first operand has been parsed. When building a compact
+	 * tree, opens a node of kind in place of the operand instead, and
+	 * returns null.
+	 */
+	private Token operator(int kind) {
+		if (tree == null) {
+			return scanner.getToken();
+		}
+		tree.wrapLast(kind, scanner.getTokenIndex());
+		return null;
+	}
+
+	// ---------- LL(1) dispatch tables ----------
+	// The alternative of statement and factor to take for each TokenKind
+	// ordinal, in the order the alternatives are tried (-1 == none)
+	private static final int STATEMENT_ASSIGNMENT = 0;
+	private static final int STATEMENT_INPUT = 1;
+	private static final int STATEMENT_OUTPUT = 2;
+	private static final int STATEMENT_IF = 3;
+	private static final int STATEMENT_WHILE = 4;
+	private static final int STATEMENT_RETURN = 5;
+	private static final int STATEMENT_PROCEDURE = 6;
+	private static final byte[] statementDispatch = dispatchTable(
+			NonTerminal.ASSIGNMENT.firstMask, NonTerminal.INPUT.firstMask,
+			NonTerminal.OUTPUT.firstMask, NonTerminal.IF_STATEMENT.firstMask,
+			NonTerminal.WHILE_STATEMENT.firstMask,
+			NonTerminal.RETURN_STATEMENT.firstMask,
+			NonTerminal.PROCEDURE_STATEMENT.firstMask);
+
+	private static final int FACTOR_SELECTOR = 0;
+	private static final int FACTOR_NUMBER = 1;
+	private static final int FACTOR_CALL = 2;
+	private static final int FACTOR_PAREN = 3;
+	private static final byte[] factorDispatch = dispatchTable(
+			NonTerminal.SELECTOR.firstMask, NonTerminal.bit(TokenKind.NUMBER),
+			NonTerminal.PROCEDURE_CALL.firstMask, NonTerminal.bit(TokenKind.L_PAREN));
+
+	private static byte[] dispatchTable(long... alternatives) {
+		byte[] table = new byte[TokenKind.values().length];
+		for (int kind = 0; kind < table.length; kind++) {
+			table[kind] = -1;
+			for (int i = alternatives.length - 1; i >= 0; i--) {
+				if ((alternatives[i] & (1L << kind)) != 0) {
+					table[kind] = (byte) i;
+				}
+			}
+		}
+		return table;
+	}
+
+	// ---------- Error recovery ----------
+	// The tokens a bad statement or declaration is skipped to. IDENT, ":" and
+	// the type names are left out, bad expressions and declarations are full
+	// of them.
+	private static final long STATEMENT_SYNC = NonTerminal.bit(TokenKind.SEMICOLON)
+			| NonTerminal.bit(TokenKind.R_BRACE) | NonTerminal.bit(TokenKind.EOF)
+			| NonTerminal.bit(TokenKind.IF) | NonTerminal.bit(TokenKind.WHILE)
+			| NonTerminal.bit(TokenKind.RETURN) | NonTerminal.INPUT.firstMask
+			| NonTerminal.OUTPUT.firstMask;
+	private static final long DECLARATION_SYNC = STATEMENT_SYNC
+			| NonTerminal.DECLARATIONS.firstMask | NonTerminal.bit(TokenKind.MAIN);
+
+	// Rethrows e unless error recovery is on and the limit has not been hit
+	void checkRecoverable(ParserException e) throws ParserException {
+		if (!errorRecovery || errors.size() >= maxErrors || have(TokenKind.EOF)) {
+			throw e;
+		}
+	}
+
+	/**
+	 * Panic mode: drops the statement or declaration (of nt) that started at
+	 * lineNum/charPos, when braces blocks were open, and skips to the next
+	 * token in syncSet, past it if it is a ";". The blocks the dropped
+	 * statement opened, or opens while it is skipped, are skipped whole, so
+	 * a ";" or "}" in them is not taken for the end of the statement. At
+	 * least one token is skipped if nothing of a new nt has been read, so
+	 * the same error is not reported forever.
+	 */
+	private void recover(ParserException e, long syncSet, NonTerminal nt,
+			int lineNum, int charPos, int depth, int braces)
+			throws ParserException {
+		checkRecoverable(e);
+		recursionDepth = depth;
+		if (scanner.getLineNum() == lineNum && scanner.getCharPos() == charPos
+				&& have(nt)) {
+			scanner.next();
+		}
+		int blocks = openBraces - braces;
+		while (!have(TokenKind.EOF) && (blocks > 0
+				|| (syncSet & NonTerminal.bit(scanner.getTokenKind())) == 0)) {
+			if (have(TokenKind.L_BRACE)) {
+				blocks++;
+			} else if (have(TokenKind.R_BRACE)) {
+				blocks--;
+			}
+			scanner.next();
+		}
+		openBraces = braces;
+		accept(TokenKind.SEMICOLON);
+	}
+
 	// ---------- Recursive descent methods ---------- //
 	// selector := IDENT { "[" expression "]" }
-	private Node selector() throws ParserException {
+	private Ast.Selector selector() throws ParserException {
 		enterRule(NonTerminal.SELECTOR);
-		Token ident = expectRetrieve(TokenKind.IDENT);
-		Symbol id = tryResolveSymbol(ident, Symbol.Kind.VAR);
-
-		// resolve the address of the variable
-		codeGen.labelComment("Selector => " + id.toString());
+		Token ident = null;
+		Symbol id;
+		ArrayList<Ast.Expression> indices = null;
+		if (tree == null) {
+			ident = expectRetrieve(TokenKind.IDENT);
+			id = tryResolveSymbol(ident, Symbol.Kind.VAR);
+			indices = new ArrayList<Ast.Expression>();
+		} else {
+			int token = expectIndex(TokenKind.IDENT);
+			id = tryResolveSymbol(token, Symbol.Kind.VAR);
+			tree.open(AstArena.SELECTOR, token, id);
+		}
 
-		Node lhs = new Node(id.getName(), id.getType());
-		int arity = 0;// arity of an array ident
 		while (accept(TokenKind.L_BRACKET)) {
-			Node rhs = expression();
-			arity = selectorCheck(lhs, rhs, id, ident, arity);
-			if (arity == getArrayArity(id.getType())) {
-				// turn the lhs node type into the base type
-				lhs = new Node(id.getName(), getArrayBaseType(id
-						.getType()));
-			} else if (arity > getArrayArity(id.getType())) {
-				// using to much arity so set back to full type
-				lhs = new Node(id.getName(), id.getType());
+			Ast.Expression index = expression();
+			if (indices != null) {
+				indices.add(index);
 			}
 			expect(TokenKind.R_BRACKET);
 		}
 		exitRule(NonTerminal.SELECTOR);
-		stringPresent = false;
-
-		/**
-		 * Make sure to check to see if that variable is an address to a
-		 * variable over the actual value of the variable
-		 */
-		int tempAddr = codeGen.getTemporaryRegister();
-
-		codeGen.loadAddress(id.getName(), tempAddr);
-		codeGen.push(tempAddr);
-
-		codeGen.releaseTemporaryRegister(tempAddr);
-
-		return lhs;
+		if (tree != null) {
+			tree.close();
+			return null;
+		}
+		return new Ast.Selector(ident, id, indices);
 	}
 
 	// parameters := IDENT { "," IDENT }
-	private ArrayList<Node> parameters() throws ParserException {
+	private ArrayList<Symbol> parameters() throws ParserException {
 		enterRule(NonTerminal.PARAMETERS);
-		ArrayList<Node> node = null;
-		if (io) {
-			node = ioCheck();
-		} else {
-			Symbol proc = tryResolveSymbol(sym, Symbol.Kind.PROCEDURE);
-			funcCheck(proc, proc.getArguements());
-		}
+		ArrayList<Symbol> params = tree == null ? new ArrayList<Symbol>()
+				: null;
+		do {
+			Symbol param = expectSymbol(Symbol.Kind.VAR);
+			if (tree == null) {
+				params.add(param);
+			} else {
+				tree.add(AstArena.NAME, -1, param);
+			}
+		} while (accept(TokenKind.COMMA));
 		exitRule(NonTerminal.PARAMETERS);
-		return node;
+		return params;
 	}
 
 	// condition := "(" expression relop expression ")"
-	private void condition(String branchout) throws ParserException {
-
+	private Ast.Condition condition() throws ParserException {
 		enterRule(NonTerminal.CONDITION);
 		expect(TokenKind.L_PAREN);
-		Node lhs = expression();
-		Token op = scanner.getToken();
+		Ast.Expression lhs = expression();
+		Token op = operator(AstArena.CONDITION);
 		expect(NonTerminal.RELOP);
-		Node rhs = expression();
-		// type check the inputs
-		conditionCheck(lhs, op, rhs);
-
-		/**
-		 * Generate code for the expression
-		 */
-		codeGen.cond(op.getLexeme(), branchout);
-
+		Ast.Expression rhs = expression();
 		expect(TokenKind.R_PAREN);
 		exitRule(NonTerminal.CONDITION);
-		stringPresent = false;
+		if (tree != null) {
+			tree.close();
+			return null;
+		}
+		return new Ast.Condition(lhs, op, rhs);
 	}
 
 	// procedureCall := "::" IDENT "(" [ parameters ] ")"
-	private Node procedureCall() throws ParserException {
-		io = false;// set the parameters to deal with func arguements
+	private Ast.ProcedureCall procedureCall() throws ParserException {
 		enterRule(NonTerminal.PROCEDURE_CALL);
 		expect(TokenKind.COLON);
 		expect(TokenKind.COLON);
-		sym = expectRetrieve(TokenKind.IDENT);
-		Symbol proc = tryResolveSymbol(sym, Symbol.Kind.PROCEDURE);
-		Node node = new Node(proc.getName(), proc.getType());
+		Token ident = null;
+		Symbol proc;
+		ArrayList<Symbol> args = null;
+		if (tree == null) {
+			ident = sym = expectRetrieve(TokenKind.IDENT);
+			proc = tryResolveSymbol(sym, Symbol.Kind.PROCEDURE);
+			args = new ArrayList<Symbol>();
+		} else {
+			symToken = expectIndex(TokenKind.IDENT);
+			proc = tryResolveSymbol(symToken, Symbol.Kind.PROCEDURE);
+			tree.open(AstArena.CALL, symToken, proc);
+		}
 		expect(TokenKind.L_PAREN);
 		if (have(NonTerminal.PARAMETERS)) {
-			parameters();
+			ArrayList<Symbol> params = parameters();
+			if (tree == null) {
+				args = params;
+			}
 		}
 		expect(TokenKind.R_PAREN);
 		exitRule(NonTerminal.PROCEDURE_CALL);
-		return node;
+		if (tree != null) {
+			tree.close();
+			return null;
+		}
+		return new Ast.ProcedureCall(ident, proc, args);
 	}
 
 	// assignment := selector "=" ( expression | string_literal ) ";"
-	private void assignment() throws ParserException {
-		codeGen.labelComment("ASSIGMENT");
-
-		// reset each time for an assignement
-		stringPresent = false;
+	private Ast.Assignment assignment() throws ParserException {
 		enterRule(NonTerminal.ASSIGNMENT);
-		Node rhs, lhs = selector();
-		Token op = scanner.getToken();
+		Ast.Selector lhs = selector();
+		Token op = operator(AstArena.ASSIGNMENT);
 		expect(TokenKind.ASSIGN);
+		Ast.Assignment node = null;
 		if (have(NonTerminal.EXPRESSION)) {
-			rhs = expression();
-			assignementExprCheck(lhs, op, rhs);
-
-			/**
-			 * Generate code to assignment value to a variable
-			 */
-
-			codeGen.labelComment("Pop Assigning");
-			int rhsReg = codeGen.pop();
-			int lhsReg = codeGen.pop();
-
-			codeGen.labelComment("Assigning");
-			codeGen.storeValue(lhsReg, rhsReg);
-
-			codeGen.releaseTemporaryRegister(rhsReg);
-			codeGen.releaseTemporaryRegister(lhsReg);
+			Ast.Expression value = expression();
+			if (tree == null) {
+				node = new Ast.Assignment(lhs, op, value);
+			}
+		} else if (tree == null) {
+			node = new Ast.Assignment(lhs, op,
+					expectRetrieve(TokenKind.STRING_LITERAL));
 		} else {
-			assignementLiteralCheck(lhs, op);
-			expect(TokenKind.STRING_LITERAL);
+			tree.add(AstArena.STRING_LITERAL,
+					expectIndex(TokenKind.STRING_LITERAL));
 		}
 
 		expect(TokenKind.SEMICOLON);
+		if (tree != null) {
+			tree.close();
+		}
 		exitRule(NonTerminal.ASSIGNMENT);
-		stringPresent = false;
+		return node;
 	}
 
 	// input := "input" "(" parameters ")" ";"
-	private void input() throws ParserException {
-		codeGen.labelComment("::INPUT::");
-
-		io = true;// set the parameter function to deal with an IO func
+	private Ast.Input input() throws ParserException {
 		enterRule(NonTerminal.INPUT);
-		sym = expectRetrieve(TokenKind.INPUT);
-		expect(TokenKind.L_PAREN);
-		ArrayList<Node> nodes = parameters();
-
-		for (Node n : nodes) {
-			int returnReg = codeGen.insertInputIntSequence(n.getTokenName());
-			codeGen.releaseTemporaryRegister(returnReg);
+		Token keyword = null;
+		if (tree == null) {
+			sym = expectRetrieve(TokenKind.INPUT);
+			keyword = sym;
+		} else {
+			symToken = expectIndex(TokenKind.INPUT);
+			tree.open(AstArena.INPUT, symToken);
 		}
-
+		expect(TokenKind.L_PAREN);
+		ArrayList<Symbol> params = parameters();
 		expect(TokenKind.R_PAREN);
 		expect(TokenKind.SEMICOLON);
 		exitRule(NonTerminal.INPUT);
+		if (tree != null) {
+			tree.close();
+			return null;
+		}
+		return new Ast.Input(keyword, params);
 	}
 
 	// output := "print" "(" parameters ")" ";"
-	private void output() throws ParserException {
-		codeGen.labelComment("::OUTPUT::");
-
-		io = true;// set the parameter function to deal with an IO func
+	private Ast.Output output() throws ParserException {
 		enterRule(NonTerminal.OUTPUT);
-		sym = expectRetrieve(TokenKind.PRINT);
-		expect(TokenKind.L_PAREN);
-
-		ArrayList<Node> nodes = parameters();
-
-		for (Node n : nodes) {
-			int addreg = codeGen.getTemporaryRegister();
-			codeGen.loadAddress(n.getTokenName(), addreg);
-			codeGen.insertPrintIntSequence(addreg);
-			codeGen.releaseTemporaryRegister(addreg);
+		Token keyword = null;
+		if (tree == null) {
+			sym = expectRetrieve(TokenKind.PRINT);
+			keyword = sym;
+		} else {
+			symToken = expectIndex(TokenKind.PRINT);
+			tree.open(AstArena.OUTPUT, symToken);
 		}
-
+		expect(TokenKind.L_PAREN);
+		ArrayList<Symbol> params = parameters();
 		expect(TokenKind.R_PAREN);
 		expect(TokenKind.SEMICOLON);
 		exitRule(NonTerminal.OUTPUT);
+		if (tree != null) {
+			tree.close();
+			return null;
+		}
+		return new Ast.Output(keyword, params);
 	}
 
 	// ifStatement := "if" condition "{" statementSequence "}"
 	// [ "else" "{" statementSequence "}" ]
-	private void ifStatement() throws ParserException {
-		String branchout = codeGen.makeLabel();// create the branch label
-
+	private Ast.IfStatement ifStatement() throws ParserException {
 		enterRule(NonTerminal.IF_STATEMENT);
 		expect(TokenKind.IF);
-		condition(branchout);
+		if (tree != null) {
+			tree.open(AstArena.IF, -1);
+		}
+		Ast.Condition cond = condition();
 		expect(TokenKind.L_BRACE);
-		statementSequence();
+		List<Ast.Statement> thenStatements = block();
 		expect(TokenKind.R_BRACE);
+		List<Ast.Statement> elseStatements = null;
 		if (accept(TokenKind.ELSE)) {
-			codeGen.insertInstruction(branchout + ":");
-			codeGen.debugComment("ELSE");
 			expect(TokenKind.L_BRACE);
-			statementSequence();
+			elseStatements = block();
 			expect(TokenKind.R_BRACE);
-		} else {
-			codeGen.insertInstruction(branchout + ":");
 		}
 		exitRule(NonTerminal.IF_STATEMENT);
+		if (tree != null) {
+			tree.close();
+			return null;
+		}
+		return new Ast.IfStatement(cond, thenStatements, elseStatements);
 	}
 
 	// whileStatement := "while" condition "{" statementSequence "}"
-	private void whileStatement() throws ParserException {
-
-		String branchin = codeGen.makeLabel();
-		String branchout = codeGen.makeLabel();
-
-		codeGen.insertInstruction(branchin + ":");
-
+	private Ast.WhileStatement whileStatement() throws ParserException {
 		enterRule(NonTerminal.WHILE_STATEMENT);
 		expect(TokenKind.WHILE);
-		condition(branchout);
+		if (tree != null) {
+			tree.open(AstArena.WHILE, -1);
+		}
+		Ast.Condition cond = condition();
 		expect(TokenKind.L_BRACE);
-		statementSequence();
+		List<Ast.Statement> statements = block();
 		expect(TokenKind.R_BRACE);
-
-		/**
-		 * Code generation
-		 */
-
-		codeGen.insertInstruction("j " + branchin);
-		codeGen.insertInstruction(branchout + ":");
-		codeGen.debugComment("END OF WHILE:" + branchin);
-
 		exitRule(NonTerminal.WHILE_STATEMENT);
+		if (tree != null) {
+			tree.close();
+			return null;
+		}
+		return new Ast.WhileStatement(cond, statements);
+	}
 
+	// The statements of an if or while, in a BLOCK of a compact tree
+	private List<Ast.Statement> block() throws ParserException {
+		if (tree == null) {
+			return statementSequence(false);
+		}
+		tree.open(AstArena.BLOCK, -1);
+		statementSequence(false);
+		tree.close();
+		return null;
 	}
 
 	// returnStatement := "return" expression ";"
-	private void returnStatement() throws ParserException {
+	private Ast.ReturnStatement returnStatement() throws ParserException {
 		enterRule(NonTerminal.RETURN_STATEMENT);
-		// get the current function symbol if it exists
-		Symbol func = tryResolveSymbol(sym, Symbol.Kind.PROCEDURE);
-		// make current ident as the return token
-		sym = expectRetrieve(TokenKind.RETURN);
-		Node expr = expression();
-		// do the type check on func symbol type and expr type
-		returnCheck(func, expr);
+		Symbol func;
+		Token keyword = null;
+		if (tree == null) {
+			// get the current function symbol if it exists
+			func = tryResolveSymbol(sym, Symbol.Kind.PROCEDURE, !mainReturn);
+			// make current ident as the return token
+			sym = expectRetrieve(TokenKind.RETURN);
+			keyword = sym;
+		} else {
+			func = tryResolveSymbol(symToken, Symbol.Kind.PROCEDURE,
+					!mainReturn);
+			symToken = expectIndex(TokenKind.RETURN);
+			tree.open(AstArena.RETURN, symToken, func);
+		}
+		Ast.Expression expr = expression();
 		expect(TokenKind.SEMICOLON);
 		exitRule(NonTerminal.RETURN_STATEMENT);
-		stringPresent = false;
+		if (tree != null) {
+			tree.close();
+			return null;
+		}
+		return new Ast.ReturnStatement(func, keyword, expr);
 	}
 
 	// procedureStatement := procedureCall ";"
-	private void procedureStatement() throws ParserException {
+	private Ast.ProcedureStatement procedureStatement() throws ParserException {
 		enterRule(NonTerminal.PROCEDURE_STATEMENT);
-		procedureCall();
+		if (tree != null) {
+			tree.open(AstArena.PROCEDURE_STATEMENT, -1);
+		}
+		Ast.ProcedureCall call = procedureCall();
 		expect(TokenKind.SEMICOLON);
 		exitRule(NonTerminal.PROCEDURE_STATEMENT);
+		if (tree != null) {
+			tree.close();
+			return null;
+		}
+		return new Ast.ProcedureStatement(call);
 	}
 
 	// statement := assignment | input | output | ifStatement |
 	// whileStatement | returnStatement | procedureStatement
-	private void statement() throws ParserException {
+	private Ast.Statement statement() throws ParserException {
 		enterRule(NonTerminal.STATEMENT);
-		if (have(NonTerminal.ASSIGNMENT)) {
-			assignment();
-		} else if (have(NonTerminal.INPUT)) {
-			input();
-		} else if (have(NonTerminal.OUTPUT)) {
-			output();
-		} else if (have(NonTerminal.IF_STATEMENT)) {
-			ifStatement();
-		} else if (have(NonTerminal.WHILE_STATEMENT)) {
-			whileStatement();
-		} else if (have(NonTerminal.RETURN_STATEMENT)) {
-			returnStatement();
-		} else if (have(NonTerminal.PROCEDURE_STATEMENT)) {
-			procedureStatement();
-		} else {
+		Ast.Statement node = null;
+		switch (statementDispatch[scanner.getTokenKind().ordinal()]) {
+		case STATEMENT_ASSIGNMENT:
+			node = assignment();
+			break;
+		case STATEMENT_INPUT:
+			node = input();
+			break;
+		case STATEMENT_OUTPUT:
+			node = output();
+			break;
+		case STATEMENT_IF:
+			node = ifStatement();
+			break;
+		case STATEMENT_WHILE:
+			node = whileStatement();
+			break;
+		case STATEMENT_RETURN:
+			node = returnStatement();
+			break;
+		case STATEMENT_PROCEDURE:
+			node = procedureStatement();
+			break;
+		default:
 			expect(NonTerminal.STATEMENT);
 		}
 		exitRule(NonTerminal.STATEMENT);
+		return node;
 	}
 
 	// statementSequence := statement { statement }
-	private void statementSequence() throws ParserException {
+	// The statements of a procedure body are compiled as they are parsed.
+	private List<Ast.Statement> statementSequence(boolean body)
+			throws ParserException {
 		enterRule(NonTerminal.STATEMENT_SEQUENCE);
+		ArrayList<Ast.Statement> statements = tree == null
+				? new ArrayList<Ast.Statement>() : null;
 		do {
-			statement();
+			int lineNum = scanner.getLineNum(), charPos = scanner.getCharPos();
+			int depth = recursionDepth, braces = openBraces;
+			// where the statement's node goes in a compact tree
+			int node = tree == null ? -1 : tree.size();
+			boolean parsed = false;
+			try {
+				Ast.Statement statement = statement();
+				parsed = true;
+				if (body && tree != null) {
+					compile(node);
+				} else if (body) {
+					compile(statement);
+				}
+				if (statements != null) {
+					statements.add(statement);
+				}
+			} catch (ParserException e) {
+				if (tree != null) {
+					tree.truncate(node);
+				}
+				if (!parsed) {
+					recover(e, STATEMENT_SYNC, NonTerminal.STATEMENT, lineNum,
+							charPos, depth, braces);
+				} else {
+					// the statement was read, only its checks failed
+					checkRecoverable(e);
+				}
+			}
 		} while (have(NonTerminal.STATEMENT));
 		exitRule(NonTerminal.STATEMENT_SEQUENCE);
+		return statements;
 	}
 
 	// factor := selector | NUMBER | procedureCall | "(" expression ")"
-	private Node factor() throws ParserException {
+	private Ast.Expression factor() throws ParserException {
 		enterRule(NonTerminal.FACTOR);
-		Node n = null;
-		if (have(NonTerminal.SELECTOR)) {
-			n = selector();
-			int register = codeGen.getTemporaryRegister();
-			codeGen.deReference(register);
-			codeGen.push(register);
-			codeGen.releaseTemporaryRegister(register);
-		} else if (have(TokenKind.NUMBER)) {
-			Token temp = expectRetrieve(TokenKind.NUMBER);
-			// get the number and pass the numeric value onto the stack
-			int register = codeGen.getTemporaryRegister();
-			codeGen.loadImmediate(register, temp.getLexeme());
-			codeGen.push(register);
-
-			codeGen.releaseTemporaryRegister(register);
-			n = new Node(Type.newPrimitiveType("int"));
-		} else if (have(NonTerminal.PROCEDURE_CALL)) {
+		Ast.Expression n = null;
+		switch (factorDispatch[scanner.getTokenKind().ordinal()]) {
+		case FACTOR_SELECTOR:
+			if (tree == null) {
+				n = new Ast.Dereference(selector());
+			} else {
+				tree.open(AstArena.DEREFERENCE, -1);
+				selector();
+				tree.close();
+			}
+			break;
+		case FACTOR_NUMBER:
+			if (tree == null) {
+				n = new Ast.NumberLiteral(expectRetrieve(TokenKind.NUMBER));
+			} else {
+				tree.add(AstArena.NUMBER, expectIndex(TokenKind.NUMBER));
+			}
+			break;
+		case FACTOR_CALL:
 			n = procedureCall();
-		} else if (accept(TokenKind.L_PAREN)) {
+			break;
+		case FACTOR_PAREN:
+			accept(TokenKind.L_PAREN);
 			n = expression();
 			expect(TokenKind.R_PAREN);
-		} else {
+			break;
+		default:
 			expect(NonTerminal.FACTOR);
 		}
 		exitRule(NonTerminal.FACTOR);
@@ -571,64 +960,37 @@ public class Parser {
 	}
 
 	// term := factor { op1 factor }
-	private Node term() throws ParserException {
+	private Ast.Expression term() throws ParserException {
 		enterRule(NonTerminal.TERM);
-		Node lhs = factor();
-		Token op = scanner.getToken();
-		while (accept(NonTerminal.OP1)) {
-			Node rhs = factor();
-			termCheck(lhs, rhs, op);
-			
-			/**
-			 * Generate code to multiply or divide the values in the stack
-			 * 
-			 */
-			int lhsReg = codeGen.pop();
-			codeGen.debugComment("Pop left");
-			int rhsReg = codeGen.pop();
-			codeGen.debugComment("Pop Right");
-
-			if (op.getLexeme().equals("*")) {codeGen.multiply(lhsReg, rhsReg);}
-			else if (op.getLexeme().equals("/")) {codeGen.divide(lhsReg, rhsReg);}
-			
-			codeGen.releaseTemporaryRegister(rhsReg);
-			codeGen.releaseTemporaryRegister(lhsReg);
-			
-			op = scanner.getToken();
+		Ast.Expression lhs = factor();
+		while (have(NonTerminal.OP1)) {
+			Token op = operator(AstArena.BINARY);
+			accept(NonTerminal.OP1);
+			Ast.Expression rhs = factor();
+			if (tree == null) {
+				lhs = new Ast.BinaryExpression(lhs, op, rhs);
+			} else {
+				tree.close();
+			}
 		}
 		exitRule(NonTerminal.TERM);
 		return lhs;
 	}
 
 	// expression := term { op2 term }
-	private Node expression() throws ParserException {
+	private Ast.Expression expression() throws ParserException {
 		enterRule(NonTerminal.EXPRESSION);
-		Token sym = scanner.getToken();
-		Node rhs, lhs = term();
-		Token op = scanner.getToken();// get the first operation
-		while (accept(NonTerminal.OP2)) {
-			rhs = term();
-
-			// do the type checking for expression
-			expressionCheck(lhs, rhs, op, sym);
-
-			int lhsReg = codeGen.pop();
-			codeGen.debugComment("Pop left");
-			int rhsReg = codeGen.pop();
-			codeGen.debugComment("Pop Right");
-
-			if (op.getLexeme().equals("+")) {
-				codeGen.add(lhsReg, rhsReg);
-			} else if (op.getLexeme().equals("-")) {
-				codeGen.subtract(lhsReg, rhsReg);
+		Ast.Expression lhs = term();
+		while (have(NonTerminal.OP2)) {
+			Token op = operator(AstArena.BINARY);
+			accept(NonTerminal.OP2);
+			Ast.Expression rhs = term();
+			if (tree == null) {
+				lhs = new Ast.BinaryExpression(lhs, op, rhs);
+			} else {
+				tree.close();
 			}
-
-			codeGen.releaseTemporaryRegister(rhsReg);
-			codeGen.releaseTemporaryRegister(lhsReg);
-
-			op = scanner.getToken();
 		}
-
 		exitRule(NonTerminal.EXPRESSION);
 		return lhs;
 	}
@@ -636,19 +998,11 @@ public class Parser {
 	// retType := "int" | "string" | "void" | "char"
 	private Type retType() throws ParserException {
 		enterRule(NonTerminal.RET_TYPE);
-		Token rettype = expectRetrieve(NonTerminal.RET_TYPE);
+		TokenKind rettype = scanner.getTokenKind();
+		expect(NonTerminal.RET_TYPE);
 		exitRule(NonTerminal.RET_TYPE);
-		if (rettype.getLexeme().equals("int")) {
-			return Type.newPrimitiveType("int");
-		} else if (rettype.getLexeme().equals("char")) {
-			return Type.newPrimitiveType("char");
-		} else if (rettype.getLexeme().equals("string")) {
-			return Type.newPrimitiveType("string");
-		} else if (rettype.getLexeme().equals("void")) {
-			return Type.newPrimitiveType("void");
-		}
-		throw new ParserException(rettype.getLineNum(), rettype.getCharPos(),
-				rettype.getLexeme());
+		// the keywords of RET_TYPE are the names of the types
+		return Type.newPrimitiveType(rettype.defaultLexeme);
 	}
 
 	// type := "int" | "char" | "string" | "array" NUMBER "of" type
@@ -661,8 +1015,11 @@ public class Parser {
 		} else if (accept(TokenKind.STRING)) {
 			return Type.newPrimitiveType("string");
 		} else if (accept(TokenKind.ARRAY)) {
-			int dim = Integer.parseInt(expectRetrieve(TokenKind.NUMBER)
-					.getLexeme());
+			if (!have(TokenKind.NUMBER)) {
+				printError(TokenKind.NUMBER);
+			}
+			int dim = scanner.getNumber();
+			scanner.next();
 			expect(TokenKind.OF);
 			Type t = type();
 			return Type.newArrayType(t, dim);
@@ -673,50 +1030,84 @@ public class Parser {
 
 	// declarations := { "const" IDENT "=" NUMBER ";" | "var" IDENT { "," IDENT
 	// } ":" type ";" }
-	private void declarations() throws ParserException {
+	private List<Ast.Declaration> declarations() throws ParserException {
 		enterRule(NonTerminal.DECLARATIONS);
+		ArrayList<Ast.Declaration> decls = tree == null
+				? new ArrayList<Ast.Declaration>() : null;
 		while (have(NonTerminal.DECLARATIONS)) {
-			if (accept(TokenKind.CONST)) {
-				// expect(TokenKind.IDENT);
-				Token ident = expectRetrieve(TokenKind.IDENT);
-				expect(TokenKind.ASSIGN);
-				Token number = expectRetrieve(TokenKind.NUMBER);
-
-				Symbol sym = Symbol.newConstSymbol(ident.getLexeme(),
-						Type.newPrimitiveType("int"), number.getLexeme());
-				tryDeclareSymbol(ident, sym);
-				expect(TokenKind.SEMICOLON);
-
-				codeGen.declareConstOrVar(sym);
-				int immediate = codeGen.getTemporaryRegister();
-				codeGen.loadImmediate(immediate, number.getLexeme());
-				int addrReg = codeGen.getTemporaryRegister();
-				codeGen.loadAddress(sym.getName(), addrReg);
-				codeGen.storeValue(addrReg, immediate);
-
-				codeGen.releaseTemporaryRegister(immediate);
-				codeGen.releaseTemporaryRegister(addrReg);
-			} else if (accept(TokenKind.VAR)) {
-				// expect(TokenKind.IDENT);
-				LinkedList<Token> idents = new LinkedList<Token>();
-				idents.add(expectRetrieve(TokenKind.IDENT));
-				while (accept(TokenKind.COMMA)) {
-					idents.add(expectRetrieve(TokenKind.IDENT));
+			int lineNum = scanner.getLineNum(), charPos = scanner.getCharPos();
+			int depth = recursionDepth, braces = openBraces;
+			int node = tree == null ? -1 : tree.size();
+			try {
+				Ast.Declaration decl = declaration();
+				if (decls != null) {
+					decls.add(decl);
 				}
-				expect(TokenKind.COLON);
-				Type var_type = type();
-				for (Token t : idents) {
-					Symbol sym = Symbol.newVarSymbol(t.getLexeme(), var_type);
-					tryDeclareSymbol(t, sym);
-					codeGen.declareConstOrVar(sym);
+			} catch (ParserException e) {
+				if (tree != null) {
+					tree.truncate(node);
 				}
-				expect(TokenKind.SEMICOLON);
+				recover(e, DECLARATION_SYNC, NonTerminal.DECLARATIONS, lineNum,
+						charPos, depth, braces);
 			}
-
-			else
-				expect(NonTerminal.DECLARATIONS);
 		}
 		exitRule(NonTerminal.DECLARATIONS);
+		return decls;
+	}
+
+	// "const" IDENT "=" NUMBER ";" | "var" IDENT { "," IDENT } ":" type ";"
+	private Ast.Declaration declaration() throws ParserException {
+		Ast.Declaration decl = null;
+		if (accept(TokenKind.CONST)) {
+			// expect(TokenKind.IDENT);
+			Token ident = expectRetrieve(TokenKind.IDENT);
+			expect(TokenKind.ASSIGN);
+			int numberToken = scanner.getTokenIndex();
+			Token number = expectRetrieve(TokenKind.NUMBER);
+
+			Symbol sym = Symbol.newConstSymbol(ident.getLexeme(),
+					Type.newPrimitiveType("int"), number.getLexeme());
+			tryDeclareSymbol(ident, sym);
+			expect(TokenKind.SEMICOLON);
+
+			if (tree == null) {
+				decl = new Ast.ConstDeclaration(sym, number);
+				compile(decl);
+			} else {
+				compile(tree.add(AstArena.CONST, numberToken, sym));
+			}
+		} else if (accept(TokenKind.VAR)) {
+			// expect(TokenKind.IDENT);
+			LinkedList<Token> idents = new LinkedList<Token>();
+			idents.add(expectRetrieve(TokenKind.IDENT));
+			while (accept(TokenKind.COMMA)) {
+				idents.add(expectRetrieve(TokenKind.IDENT));
+			}
+			expect(TokenKind.COLON);
+			Type var_type = type();
+			ArrayList<Symbol> syms = new ArrayList<Symbol>();
+			int node = tree == null ? -1 : tree.open(AstArena.VAR, -1);
+			for (Token t : idents) {
+				Symbol sym = Symbol.newVarSymbol(t.getLexeme(), var_type);
+				tryDeclareSymbol(t, sym);
+				syms.add(sym);
+				if (tree != null) {
+					tree.add(AstArena.NAME, -1, sym);
+				}
+			}
+			if (tree == null) {
+				decl = new Ast.VarDeclaration(syms);
+				compile(decl);
+			} else {
+				tree.close();
+				compile(node);
+			}
+			expect(TokenKind.SEMICOLON);
+		}
+
+		else
+			expect(NonTerminal.DECLARATIONS);
+		return decl;
 	}
 
 	// procedureFormalParams := type IDENT { "," type IDENT }
@@ -732,7 +1123,7 @@ public class Parser {
 			Type t = type();
 			Token ident = expectRetrieve(TokenKind.IDENT);
 			// simply make sure no parameters are arrays
-			if (arrayInstance(t)) {
+			if (TypeChecker.arrayInstance(t)) {
 				printError(ErrorType.MISMATCH_ERROR, sym,
 						ERR_MISMATCH_INVALID_ARG + ident.getLexeme() + ", " + t);
 			}
@@ -746,15 +1137,19 @@ public class Parser {
 	// procedureDeclarations := { retType IDENT "(" [ procedureFormalParams ]
 	// ")" "{"
 	// declarations procedureDeclarations statementSequence "}" }
-	private void procedureDeclarations() throws ParserException {
+	private List<Ast.ProcedureDeclaration> procedureDeclarations()
+			throws ParserException {
 		/**
 		 * Small changes made to implement parameter checking now we store the
 		 * list of args into the symbol object so we can look them up later
 		 */
 		enterRule(NonTerminal.PROCEDURE_DECLARATIONS);
+		ArrayList<Ast.ProcedureDeclaration> procs = new ArrayList<Ast.ProcedureDeclaration>();
 		ArrayList<Symbol> args = new ArrayList<Symbol>();
+		int count = 0;
 		while (have(NonTerminal.PROCEDURE_DECLARATIONS)) {
 			Type rettype = retType();
+			symToken = scanner.getTokenIndex();
 			Token ident = sym = expectRetrieve(TokenKind.IDENT);
 			tryDeclareSymbol(ident,
 					Symbol.newProcedureSymbol(ident.getLexeme(), rettype));
@@ -767,400 +1162,273 @@ public class Parser {
 			proc.addArguements(args);
 			expect(TokenKind.R_PAREN);
 			expect(TokenKind.L_BRACE);
-			if (have(NonTerminal.DECLARATIONS)) {
-				declarations();
+			ProcedureBody mark = null;
+			if (procedureBodies != null && procedureNesting == 0) {
+				mark = startBody(proc, ident, count);
 			}
-			if (have(NonTerminal.PROCEDURE_DECLARATIONS)) {
-				procedureDeclarations();
+			if (tree != null) {
+				tree.open(AstArena.PROCEDURE, -1, proc);
 			}
-			statementSequence();
+			procedureNesting++;
+			Ast.Body body = procedureBody();
+			procedureNesting--;
+			if (mark != null) {
+				endBody(mark);
+			}
+			if (tree == null) {
+				procs.add(new Ast.ProcedureDeclaration(proc, body));
+			} else {
+				tree.close();
+			}
+			count++;
 			expect(TokenKind.R_BRACE);
 			exitScope();
 		}
 		exitRule(NonTerminal.PROCEDURE_DECLARATIONS);
+		return procs;
+	}
+
+	// "{" declarations procedureDeclarations statementSequence "}", without
+	// the braces
+	private Ast.Body procedureBody() throws ParserException {
+		if (tree != null) {
+			tree.openBody(symbolTable);
+		}
+		List<Ast.Declaration> decls = new ArrayList<Ast.Declaration>();
+		List<Ast.ProcedureDeclaration> nested = new ArrayList<Ast.ProcedureDeclaration>();
+		if (have(NonTerminal.DECLARATIONS)) {
+			decls = declarations();
+		}
+		if (have(NonTerminal.PROCEDURE_DECLARATIONS)) {
+			nested = procedureDeclarations();
+		}
+		List<Ast.Statement> statements = statementSequence(true);
+		if (tree != null) {
+			tree.close();
+			return null;
+		}
+		return new Ast.Body(symbolTable, decls, nested, statements);
+	}
+
+	// ---------- Incremental compilation ----------
+	private ProcedureBody startBody(Symbol proc, Token ident, int index) {
+		ProcedureBody body = new ProcedureBody();
+		body.procedure = proc;
+		body.name = ident;
+		body.index = index;
+		body.firstToken = scanner.getTokenIndex();
+		body.codeStart = codeGen.getNextInstructionNumber();
+		body.dataStart = codeGen.getNextDataNumber();
+		body.labelStart = codeGen.labelCounter;
+		body.registersStart = codeGen.saveRegisters();
+		body.scope = symbolTable;
+		body.scopeSize = symbolTable.size();
+		body.global = symbolTable.getParent();
+		body.globalSize = body.global.size();
+		body.depth = recursionDepth;
+		return body;
+	}
+
+	private void endBody(ProcedureBody body) {
+		body.endToken = scanner.getTokenIndex();
+		body.codeEnd = codeGen.getNextInstructionNumber();
+		body.dataEnd = codeGen.getNextDataNumber();
+		body.labelEnd = codeGen.labelCounter;
+		body.registersEnd = codeGen.saveRegisters();
+		procedureBodies.add(body);
+	}
+
+	// the top-level procedure bodies of the last parse, if recorded
+	List<ProcedureBody> getProcedureBodies() {
+		return procedureBodies;
+	}
+
+	TokenBuffer getTokenBuffer() {
+		return tokenBuffer;
+	}
+
+	/**
+	 * Parses, checks and generates code for a top-level procedure body again,
+	 * from the buffered tokens of a new version of the program in which the
+	 * body runs from firstToken to the "}" at endToken, and splices the code
+	 * into the program's. Everything outside the body must be unchanged. The
+	 * scopes are put back as they were when the body was first parsed, so
+	 * the procedures declared after it are still out of sight.
+	 *
+	 * Labels keep their old numbers if the body needs no more than it had.
+	 * Returns false with compact trees on, or if the body now has an error,
+	 * ends elsewhere or leaves other registers in use for the code after it;
+	 * the program may then be part way updated and must be parsed again
+	 * whole.
+	 */
+	boolean reparseBody(Scanner newScanner, ProcedureBody body, int firstToken,
+			int endToken) {
+		if (compactTree) {
+			return false; // a packed tree cannot be patched
+		}
+		CodeGen whole = codeGen;
+		SymbolTable table = symbolTable;
+		int labelStart = body.labelStart;
+		CodeGen part = reparseBody(newScanner, body, firstToken, endToken,
+				labelStart);
+		if (part != null && part.labelCounter > body.labelEnd) {
+			// it would reuse labels of the code after it
+			labelStart = whole.labelCounter;
+			part = reparseBody(newScanner, body, firstToken, endToken,
+					labelStart);
+		}
+		codeGen = whole;
+		codeGenerator = new CodeGenerator(codeGen);
+		typeChecker = new TypeChecker(this);
+		symbolTable = table;
+		mainReturn = true;
+		if (part == null) {
+			return false;
+		}
+
+		int codeDelta = part.getNextInstructionNumber() - (body.codeEnd - body.codeStart);
+		int dataDelta = part.getNextDataNumber() - (body.dataEnd - body.dataStart);
+		whole.splice(body.codeStart, body.codeEnd, body.dataStart, body.dataEnd, part);
+		for (ProcedureBody later : procedureBodies) {
+			if (later.codeStart >= body.codeEnd) {
+				later.codeStart += codeDelta;
+				later.codeEnd += codeDelta;
+				later.dataStart += dataDelta;
+				later.dataEnd += dataDelta;
+			}
+		}
+		body.codeEnd += codeDelta;
+		body.dataEnd += dataDelta;
+		body.labelStart = labelStart;
+		body.labelEnd = part.labelCounter;
+		body.firstToken = firstToken;
+		body.endToken = endToken;
+		return true;
+	}
+
+	// The body's code, generated on its own, or null
+	private CodeGen reparseBody(Scanner newScanner, ProcedureBody body,
+			int firstToken, int endToken, int labelStart) {
+		ParseTreeListener listener = parseTreeListener;
+		parseTreeListener = null;
+		errors = new ArrayList<String>();
+		scanner = newScanner;
+		scanner.seek(firstToken);
+		symbolTable = body.scope.copyOf(body.scopeSize,
+				body.global.copyOf(body.globalSize, null));
+		sym = body.name;
+		mainReturn = false;
+		recursionDepth = body.depth;
+		procedureNesting = 1;
+		codeGen = new CodeGen(names);
+		codeGen.labelCounter = labelStart;
+		codeGen.restoreRegisters(body.registersStart);
+		codeGenerator = new CodeGenerator(codeGen);
+		typeChecker = new TypeChecker(this);
+		try {
+			Ast.Body newBody = procedureBody();
+			if (scanner.getTokenIndex() != endToken
+					|| !Arrays.equals(codeGen.saveRegisters(), body.registersEnd)) {
+				return null;
+			}
+			if (program != null) {
+				program.getProcedures().set(body.index,
+						new Ast.ProcedureDeclaration(body.procedure, newBody));
+			}
+			return codeGen;
+		} catch (ParserException e) {
+			return null;
+		} finally {
+			parseTreeListener = listener;
+			procedureNesting = 0;
+		}
 	}
 
 	// program := declarations procedureDeclarations
 	// "main" "(" ")" "{" declarations statementSequnce "}"
 	private void program() throws ParserException {
 		enterRule(NonTerminal.PROGRAM);
+		if (tree != null) {
+			tree.open(AstArena.PROGRAM, -1);
+		}
+		List<Ast.Declaration> decls = new ArrayList<Ast.Declaration>();
+		List<Ast.ProcedureDeclaration> procs = new ArrayList<Ast.ProcedureDeclaration>();
 		if (have(NonTerminal.DECLARATIONS)) {
-			declarations();
+			decls = declarations();
 		}
 		if (have(NonTerminal.PROCEDURE_DECLARATIONS)) {
-			procedureDeclarations();
+			procs = procedureDeclarations();
 		}
 		// Special case for main()
 		expect(TokenKind.MAIN);
 		mainReturn = true;
 
-		codeGen.labelComment("\tMAIN PROCEDURE");
-
-		codeGen.insertInstruction("proc.main:");
-		codeGen.labelComment(" MAIN ");
+		codeGenerator.enterMain();
 
 		expect(TokenKind.L_PAREN);
 		expect(TokenKind.R_PAREN);
 		enterScope();
 		expect(TokenKind.L_BRACE);
+		if (tree != null) {
+			tree.openBody(symbolTable);
+		}
+		List<Ast.Declaration> mainDecls = new ArrayList<Ast.Declaration>();
 		if (have(NonTerminal.DECLARATIONS)) {
-			declarations();
+			mainDecls = declarations();
+		}
+		List<Ast.Statement> statements = statementSequence(true);
+		Ast.Body main = null;
+		if (tree == null) {
+			main = new Ast.Body(symbolTable, mainDecls,
+					new ArrayList<Ast.ProcedureDeclaration>(), statements);
+		} else {
+			tree.close();
 		}
-		statementSequence();
 		expect(TokenKind.R_BRACE);
 		exitScope();
 
-		codeGen.insertExitSequence();
+		codeGenerator.exitMain();
 
 		expect(TokenKind.EOF);
 		exitRule(NonTerminal.PROGRAM);
-	}
-	
-	// ---------- Type Instance methods ----------------/
-	// Check the instance is what is being looked for //
-	public static boolean arrayInstance(Type t)
-	{
-		if(t instanceof Type.ArrayType) { return true; }
-		return false;
-	}
-
-	public static boolean primInstance(Type t)
-	{
-		if(t instanceof Type.PrimitiveType) { return true; }
-		return false;
-	}
-
-	public static boolean charInstance(Type t)
-	{
-		if(t == Type.newPrimitiveType("char")) { return true; }
-		return false;
-	}
-
-	public static boolean intInstance(Type t)
-	{
-		if(t == Type.newPrimitiveType("int")) { return true; }
-		return false;
-	}
-
-	public static boolean stringInstance(Type t)
-	{
-		if(t == Type.newPrimitiveType("string")) { return true; }
-		return false;
-	}
-
-	public static Type getArrayBaseType(Type t)
-	{
-		/**
-		 * Iteratively move down the base types
-		 */
-		while (!primInstance(t))
-		{
-			t = ((Type.ArrayType) t).getBaseType();
-		}
-		return t;
-	}
-
-	public static Type arrayBase(Type t)
-	{
-		return ((Type.ArrayType) t).getBaseType();
-	}
-
-	public int getArrayArity(Type t)
-	{
-		/**
-		 * While the type is not a primitive get to the base type and count the
-		 * number of levels there are , this is the arity
-		 */
-		int arity = 0;
-		do
-		{
-			arity++;
-			t = ((Type.ArrayType) t).getBaseType();
-		}
-		while (!primInstance(t));
-		return arity;
-	}
-
-	// ---------- Type Check methods ----------------/
-	// Check the type/semantics conform to EBNF //
-	public int selectorCheck(Node lhs, Node rhs, Symbol id, Token ident, int arity) throws ParserException
-	{
-		if(arrayInstance(lhs.getType()) && !intInstance(rhs.getType()))
-		{
-			printError(ErrorType.MISMATCH_ERROR, ident, ERR_MISMATCH_INVALID_REF + "base = "
-					+ arrayBase(lhs.getType()) + ", index = " + rhs.getType());
-		}
-		else if(!arrayInstance(lhs.getType()))
-		{
-			printError(ErrorType.MISMATCH_ERROR, ident,
-					ERR_MISMATCH_INVALID_REF + "base = " + lhs.getType() + ", index = " + rhs.getType());
-		}
-		else
-		{
-			arity++;
-		}
-		return arity;
-	}
-
-	public static void assignementExprCheck(Node lhs, Token op, Node rhs) throws ParserException
-	{
-		checkForArrayError(1, lhs, rhs, op);
-		if((lhs.getType() != rhs.getType()))
-		{
-			if(stringInstance(lhs.getType()))
-			{
-				// this is the deep string search , so if a string is in there
-				// somewhere then we can find it
-				if(!stringPresent)
-				{
-					printError(ErrorType.MISMATCH_ERROR, op, ERR_MISMATCH_INVALID_ASSIGN + lhs.getType()
-							+ " <- " + rhs.getType());
-				}
-			}
-			else
-			{
-				printError(ErrorType.MISMATCH_ERROR, op, ERR_MISMATCH_INVALID_ASSIGN + lhs.getType()
-						+ " <- " + rhs.getType());
-			}
-		}
-	}
-
-	public static void assignementLiteralCheck(Node lhs, Token op) throws ParserException
-	{
-		if(!stringInstance(lhs.getType()))
-		{
-			printError(ErrorType.MISMATCH_ERROR, op, ERR_MISMATCH_INVALID_ASSIGN + " " + lhs.getType()
-					+ " <- " + Type.newPrimitiveType("string"));
-		}
-	}
-
-	public static void termCheck(Node lhs, Node rhs, Token op) throws ParserException
-	{
-		/**
-		 * int and char instances can be multiplied by each other , but not with
-		 * each other
-		 */
-		checkForArrayError(0, lhs, rhs, op);
-		if(!(intInstance(lhs.getType()) && intInstance(rhs.getType())))
-		{
-			printError(ErrorType.MISMATCH_ERROR, op, ERR_MISMATCH_INVALID_OP + op.getLexeme() + ", "
-					+ lhs.getType() + ", " + rhs.getType());
-		}
-	}
-
-	public static void expressionCheck(Node lhs, Node rhs, Token op, Token sym) throws ParserException
-	{
-		/**
-		 * So anything can be added with a string, apart from that make sure the
-		 * types are the same
-		 */
-		checkForArrayError(0, lhs, rhs, op);
-		if(stringInstance(lhs.getType()) || stringInstance(rhs.getType()))
-		{
-			stringPresent = true;// set the deep string flag , so if a
-			// string is somewhere in a long expression , the whole expression
-			// becomes a string
-			return;
-		}
-		else if(lhs.getType() != rhs.getType())
-		{
-			printError(ErrorType.MISMATCH_ERROR, op, ERR_MISMATCH_INVALID_OP + op.getLexeme() + ", "
-					+ lhs.getType() + ", " + rhs.getType());
-		}
-	}
-
-	public static void conditionCheck(Node lhs, Token op, Node rhs) throws ParserException
-	{
-		/**
-		 * Check whether we are comparing an array first (error) then simply
-		 * check if the 2 sides are of the same type
-		 */
-		checkForArrayError(0, lhs, rhs, op);
-		if(stringPresent)
-		{
-			if(!stringInstance(lhs.getType()))
-			{
-				printError(ErrorType.MISMATCH_ERROR, op, ERR_MISMATCH_INVALID_OP + op.getLexeme() + ", "
-						+ lhs.getType() + ", " + Type.newPrimitiveType("string"));
-			}
-		}
-		else if(lhs.getType() != rhs.getType())
-		{
-			printError(ErrorType.MISMATCH_ERROR, op, ERR_MISMATCH_INVALID_OP + op.getLexeme() + ", "
-					+ lhs.getType() + ", " + rhs.getType());
+		if (tree == null) {
+			program = new Ast.Program(decls, procs, main);
+		} else {
+			tree.close();
+			tree.finish();
+			programArena = tree;
+			tree = null;
 		}
 	}
 
-	public ArrayList<Node> ioCheck() throws ParserException
-	{
-		ArrayList<Node> node = new ArrayList<Node>();
-		do
-		{
-			Token ident = expectRetrieve(TokenKind.IDENT);
-			Symbol c = tryResolveSymbol(ident, Symbol.Kind.VAR);
-			if(arrayInstance(c.getType()))
-			{
-				printError(ErrorType.MISMATCH_ERROR, sym, ERR_MISMATCH_INVALID_ARG + c.getName()
-						+ ", " + c.getType());
-			}
-			node.add(new Node(c.getName(),c.getType()));
-			
-		}
-		while (accept(TokenKind.COMMA));
-		
-		return node;
+	// Runs the type check and code generation passes over a declaration or a
+	// statement of a procedure body as soon as it has been parsed, so errors
+	// are still reported in source order and with the scope they occur in
+	private void compile(Ast node) throws ParserException {
+		typeChecker.check(node);
+		codeGenerator.generate(node);
 	}
 
-	public void funcCheck(Symbol proc, ArrayList<Symbol> args) throws ParserException
-	{
-		/**
-		 * Slightly more awkward than IO check The order of the lists here
-		 * matter so firstly go through the arguements and put them into another
-		 * list during the input check that they are the same order as the real
-		 * inputs and activate a flag isCorrect as false if there's a Mismatch
-		 * error
-		 * 
-		 * else if the 2 lists are of different lengths then show an Arity error
-		 */
-		ListIterator<Symbol> iter = args.listIterator();
-		ArrayList<Symbol> givenArgs = new ArrayList<Symbol>();
-		Symbol correctSymbol = iter.next();
-		boolean isCorrect = true;
-		do
-		{
-			Token ident = expectRetrieve(TokenKind.IDENT);
-			Symbol givenArg = tryResolveSymbol(ident, Symbol.Kind.VAR);
-			if(arrayInstance(givenArg.getType()))
-			{
-				printError(ErrorType.MISMATCH_ERROR, sym,
-						ERR_MISMATCH_INVALID_ARG + givenArg.getName() + ", " + givenArg.getType());
-			}
-			else
-			{
-				givenArgs.add(givenArg);
-				if(iter.hasNext())
-				{
-					correctSymbol = iter.next();
-				}
-				if(givenArg.getType() != correctSymbol.getType())
-				{
-					isCorrect = false;
-				}
-			}
-		}
-		while (accept(TokenKind.COMMA));
-		if(!isCorrect || (args.size() != givenArgs.size()))
-		{
-			String pattern = proc.getName() + "(";
-			String pattern2 = "(";
-			Iterator<Symbol> i1 = args.iterator();
-			Iterator<Symbol> i2 = givenArgs.iterator();
-			while (i1.hasNext())
-			{
-				pattern += i1.next().getType();
-				if(i1.hasNext())
-				{
-					pattern += ", ";
-				}
-			}
-			while (i2.hasNext())
-			{
-				pattern2 += i2.next().getType();
-				if(i2.hasNext())
-				{
-					pattern2 += ", ";
-				}
-			}
-			pattern += ")";
-			pattern2 += ")";
-			// System.out.println(ERR_MISMATCH_INVALID_CALL +
-			// pattern +
-			// " with "+ pattern2);
-			if(args.size() != givenArgs.size())
-			{
-				printError(ErrorType.ARITY_ERROR, sym, ERR_MISMATCH_INVALID_CALL + pattern
-						+ " with " + pattern2);
-			}
-			else
-			{
-				printError(ErrorType.MISMATCH_ERROR, sym, ERR_MISMATCH_INVALID_CALL + pattern
-						+ " with " + pattern2);
-			}
-		}
+	// The same for node of the compact tree being built
+	private void compile(int node) throws ParserException {
+		typeChecker.check(tree, node);
+		codeGenerator.generate(tree, node);
 	}
 
-	public static void returnCheck(Symbol func, Node expr) throws ParserException
-	{
-		/**
-		 * if func is null then its the main function that is being compared to
-		 * (i.e the void type)
-		 */
-		if(func == null)
-		{
-			if(!expr.getType().equals("void"))
-			{
-				printError(ErrorType.MISMATCH_ERROR, sym, ERR_MISMATCH_INVALID_RET + "expected = "
-						+ Type.newPrimitiveType("void") + ", received = " + expr.getType());
-			}
-		}
-		else if(func.getType() != expr.getType())
-		{
-			printError(ErrorType.MISMATCH_ERROR, sym, ERR_MISMATCH_INVALID_RET + "expected = "
-					+ func.getType() + ", received = " + expr.getType());
-		}
+	/**
+	 * Returns the tree of the last program parsed, or null if the parse
+	 * failed or the tree was kept compact.
+	 */
+	public Ast.Program getProgram() {
+		return program;
 	}
 
-	public static void checkForArrayError(int Check, Node lhs, Node rhs, Token op) throws ParserException
-	{
-		/**
-		 * Check for any instances of an array type here
-		 */
-		if(Check == 0)
-		{
-			String MM = ERR_MISMATCH_INVALID_OP + op.getLexeme() + ", " + lhs.getType() + ", " + rhs.getType();
-			if(arrayInstance(lhs.getType()))
-			{
-				if(arrayInstance(rhs.getType()))
-				{
-					printError(ErrorType.MISMATCH_ERROR, op, MM);
-				}
-				else
-				{
-					printError(ErrorType.MISMATCH_ERROR, op, MM);
-				}
-			}
-			else if(arrayInstance(rhs.getType()))
-			{
-				printError(ErrorType.MISMATCH_ERROR, op, MM);
-			}
-		}
-		else if(Check == 1)
-		{
-			if(arrayInstance(lhs.getType()))
-			{
-				if(arrayInstance(rhs.getType()))
-				{
-					printError(
-							ErrorType.MISMATCH_ERROR,
-							op,
-							ERR_MISMATCH_INVALID_ASSIGN + arrayBase(lhs.getType()) + " <- "
-									+ arrayBase(rhs.getType()));
-				}
-				else
-				{
-					printError(
-							ErrorType.MISMATCH_ERROR,
-							op,
-							ERR_MISMATCH_INVALID_ASSIGN + arrayBase(lhs.getType()) + " <- "
-									+ rhs.getType());
-				}
-			}
-			else if(arrayInstance(rhs.getType()))
-			{
-				printError(ErrorType.MISMATCH_ERROR, op, ERR_MISMATCH_INVALID_ASSIGN + lhs.getType()
-						+ " <- " + arrayBase(rhs.getType()));
-			}
-		}
+	/**
+	 * Returns the packed tree of the last program parsed with compact trees
+	 * on, or null.
+	 */
+	public AstArena getProgramArena() {
+		return programArena;
 	}
 
 	public CodeGen getCodeGenerator() {
@@ -0,0 +1,329 @@
+/**
+ * A symbol table whose every state can be kept: snapshot() is O(1) and
+ * returns a Snapshot that later addSymbol(), newScope() and exitScope()
+ * calls leave as it was.
+ *
+ * Each scope is a hash array mapped trie (HAMT) from the symbol's key, its
+ * interned name id and namespace as in SymbolTable, to the symbol. Adding a
+ * symbol copies only the path from the root of the trie to it, at most
+ * seven nodes of up to 32 entries, and shares the rest with the scope it
+ * replaces. The scopes chain to their parents, which never change while a
+ * scope is open. Snapshots never change, so an error report or a cache can
+ * keep one without copying it. They are not for sharing between threads:
+ * lookups by name go through the table's NamePool, which is unsynchronized
+ * and grows as names are added.
+ */
+public class PersistentSymbolTable
+{
+
+	/**
+	 * The table as it was when snapshot() was called: a scope and the scopes
+	 * enclosing it. Immutable.
+	 */
+	public static final class Snapshot
+	{
+		private final NamePool names;
+		private final Snapshot parent;
+		/* the trie of this scope, null if it is empty */
+		private final Node root;
+		/* the newest symbol of this scope, linked to the ones before it */
+		private final Leaf last;
+		private final int size;
+		private final int depth;
+
+		private Snapshot(NamePool names, Snapshot parent, Node root, Leaf last,
+				int size)
+		{
+			this.names = names;
+			this.parent = parent;
+			this.root = root;
+			this.last = last;
+			this.size = size;
+			this.depth = parent == null ? 0 : parent.depth + 1;
+		}
+
+		/**
+		 * Returns the symbol with the given name and kind in this scope or an
+		 * enclosing one, or null if such a symbol does not exist.
+		 */
+		public Symbol getSymbol(String name, Symbol.Kind kind)
+		{
+			int nameId = names.lookup(name);
+			if(nameId < 0) { return null; }
+			return getSymbol(nameId, kind);
+		}
+
+		/**
+		 * Same as getSymbol(String, Kind) for a name already interned in the
+		 * NamePool, e.g. the id of an IDENT token
+		 */
+		public Symbol getSymbol(int nameId, Symbol.Kind kind)
+		{
+			int key = key(nameId, kind);
+			int hash = hash(key);
+			for (Snapshot p = this; p != null; p = p.parent)
+			{
+				Symbol temp = find(p.root, hash);
+				if(temp != null) { return temp; }
+			}
+			return null;
+		}
+
+		// the enclosing scope, or null for the outermost one
+		public Snapshot getParent()
+		{
+			return parent;
+		}
+
+		// the number of symbols in this scope, not counting its parents
+		public int size()
+		{
+			return size;
+		}
+
+		public int getDepth()
+		{
+			return depth;
+		}
+
+		@Override
+		public String toString()
+		{
+			/**
+			 * Same as SymbolTable: the outermost scope first, each symbol in
+			 * the order it was added, behind an arrow per enclosing scope.
+			 */
+			StringBuilder res = new StringBuilder(
+					"***** Symbol Table Contents *****\n");
+			appendScopes(res);
+			return res.toString();
+		}
+
+		private void appendScopes(StringBuilder res)
+		{
+			if(parent != null) { parent.appendScopes(res); }
+			Symbol[] inOrder = new Symbol[size];
+			Leaf leaf = last;
+			for (int i = size - 1; i >= 0; i--)
+			{
+				inOrder[i] = leaf.symbol;
+				leaf = leaf.previous;
+			}
+			for (Symbol s : inOrder)
+			{
+				for (int d = 0; d < depth; d++)
+				{
+					res.append("-->");
+				}
+				res.append(s).append('\n');
+			}
+		}
+	}
+
+	/* the current state */
+	private Snapshot current;
+
+	public PersistentSymbolTable()
+	{
+		this(new NamePool());
+	}
+
+	public PersistentSymbolTable(NamePool names)
+	{
+		current = new Snapshot(names, null, null, null, 0);
+	}
+
+	/**
+	 * Tries to add the Symbol s to the current scope. Returns true on success
+	 * or false if the current scope already has a symbol of that name and
+	 * namespace; a symbol of an enclosing scope is shadowed.
+	 */
+	public boolean addSymbol(Symbol s)
+	{
+		int hash = hash(key(nameId(s), s.getKind()));
+		if(find(current.root, hash) != null) { return false; }
+		Leaf leaf = new Leaf(hash, s, current.last);
+		Node root = current.root == null ? new Node(bit(hash, 0), new Object[] { leaf })
+				: insert(current.root, leaf, 0);
+		current = new Snapshot(current.names, current.parent, root, leaf,
+				current.size + 1);
+		return true;
+	}
+
+	/**
+	 * The id of s's name in this table's NamePool. The id cached on s may
+	 * have come from another pool, so it is only used if it names the same
+	 * string here; a foreign id is left on s as it is.
+	 */
+	private int nameId(Symbol s)
+	{
+		NamePool names = current.names;
+		int id = s.getNameId();
+		if(id >= 0 && id < names.size() && names.getName(id).equals(s.getName()))
+		{
+			return id;
+		}
+		id = names.intern(s.getName());
+		if(s.getNameId() < 0) { s.setNameId(id); }
+		return id;
+	}
+
+	public Symbol getSymbol(String name, Symbol.Kind kind)
+	{
+		return current.getSymbol(name, kind);
+	}
+
+	public Symbol getSymbol(int nameId, Symbol.Kind kind)
+	{
+		return current.getSymbol(nameId, kind);
+	}
+
+	public NamePool getNamePool()
+	{
+		return current.names;
+	}
+
+	/**
+	 * Returns the current state of the table, which later changes to the
+	 * table leave alone.
+	 */
+	public Snapshot snapshot()
+	{
+		return current;
+	}
+
+	/**
+	 * Enters a new scope, inside the current one. Returns this table, so it
+	 * can stand in for SymbolTable.newScope().
+	 */
+	public PersistentSymbolTable newScope()
+	{
+		current = new Snapshot(current.names, current, null, null, 0);
+		return this;
+	}
+
+	/**
+	 * Returns to the enclosing scope. Returns this table, or null, like
+	 * SymbolTable, at the outermost scope.
+	 */
+	public PersistentSymbolTable exitScope()
+	{
+		if(current.parent == null) { return null; }
+		current = current.parent;
+		return this;
+	}
+
+	@Override
+	public String toString()
+	{
+		return current.toString();
+	}
+
+	// ---------- The trie ----------
+	/* a symbol, and the one added to its scope before it */
+	private static final class Leaf
+	{
+		final int hash;
+		final Symbol symbol;
+		final Leaf previous;
+
+		Leaf(int hash, Symbol symbol, Leaf previous)
+		{
+			this.hash = hash;
+			this.symbol = symbol;
+			this.previous = previous;
+		}
+	}
+
+	/* the entries present among 32 children, each a Leaf or a Node */
+	private static final class Node
+	{
+		final int bitmap;
+		final Object[] entries;
+
+		Node(int bitmap, Object[] entries)
+		{
+			this.bitmap = bitmap;
+			this.entries = entries;
+		}
+	}
+
+	private static Symbol find(Node node, int hash)
+	{
+		for (int shift = 0; node != null; shift += 5)
+		{
+			int bit = bit(hash, shift);
+			if((node.bitmap & bit) == 0) { return null; }
+			Object entry = node.entries[index(node.bitmap, bit)];
+			if(entry instanceof Leaf)
+			{
+				Leaf leaf = (Leaf) entry;
+				return leaf.hash == hash ? leaf.symbol : null;
+			}
+			node = (Node) entry;
+		}
+		return null;
+	}
+
+	// Returns a copy of node with leaf added, leaf's hash not being in it
+	private static Node insert(Node node, Leaf leaf, int shift)
+	{
+		int bit = bit(leaf.hash, shift);
+		int index = index(node.bitmap, bit);
+		if((node.bitmap & bit) == 0)
+		{
+			Object[] entries = new Object[node.entries.length + 1];
+			System.arraycopy(node.entries, 0, entries, 0, index);
+			entries[index] = leaf;
+			System.arraycopy(node.entries, index, entries, index + 1,
+					node.entries.length - index);
+			return new Node(node.bitmap | bit, entries);
+		}
+		Object entry = node.entries[index];
+		Object[] entries = node.entries.clone();
+		entries[index] = entry instanceof Leaf ? split((Leaf) entry, leaf, shift + 5)
+				: insert((Node) entry, leaf, shift + 5);
+		return new Node(node.bitmap, entries);
+	}
+
+	// A node holding two leaves whose hashes agree below shift
+	private static Node split(Leaf a, Leaf b, int shift)
+	{
+		int bitA = bit(a.hash, shift);
+		int bitB = bit(b.hash, shift);
+		if(bitA == bitB)
+		{
+			return new Node(bitA, new Object[] { split(a, b, shift + 5) });
+		}
+		return new Node(bitA | bitB, Integer.compareUnsigned(bitA, bitB) < 0
+				? new Object[] { a, b } : new Object[] { b, a });
+	}
+
+	private static int bit(int hash, int shift)
+	{
+		return 1 << ((hash >>> shift) & 31);
+	}
+
+	private static int index(int bitmap, int bit)
+	{
+		return Integer.bitCount(bitmap & (bit - 1));
+	}
+
+	// the lowest bit of the key holds the namespace, as in SymbolTable
+	private static int key(int nameId, Symbol.Kind kind)
+	{
+		return kind == Symbol.Kind.PROCEDURE ? (nameId << 1) | 1 : nameId << 1;
+	}
+
+	private static int hash(int key)
+	{
+		/**
+		 * Spreads consecutive keys over the trie. A multiply by an odd number
+		 * and an xor-shift can both be undone, so different keys always have
+		 * different hashes and need no collision nodes: two hashes differ in
+		 * one of the 32 bits, and so in the 5 (last: 2) bits of some level
+		 */
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
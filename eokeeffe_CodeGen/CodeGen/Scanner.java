@@ -1,9 +1,17 @@
 
+import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
-import java.io.LineNumberReader;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * The lexical analyzer component of the compiler. This is responsible for
@@ -11,8 +19,20 @@ import java.util.Map;
  */
 public class Scanner {
 
-  private LineNumberReader in;
-  private StringBuilder lexeme;
+  private static final int READ_CHUNK_SIZE = 64 * 1024;
+  private static final int MIN_LEX_CHUNK_SIZE = 256 * 1024;
+
+  // The whole source file; lexemes are slices of it. A mapped ASCII file is
+  // kept in asciiSource instead of source.
+  private char[] source;
+  private ByteBuffer asciiSource;
+  private int sourceLength;
+  private int pos;           // offset of the char after nextChar
+
+  private int lexemeStart;
+  private int lexemeEnd;
+  private int nameId;        // pool id of the current IDENT (-1 == not interned yet)
+  private String lexeme;     // made by the first getLexeme() for the token
   private TokenKind tokenKind;
   private int lineNum;
   private int charPos;
@@ -21,44 +41,150 @@ public class Scanner {
   private int nextCharPos;
   private int nextChar;  //contains the next character (-1 == EOF)
 
-  // Construct the set of keywords
-  @SuppressWarnings("serial")
-  private static final Map<String, TokenKind> keywords = new HashMap<String, TokenKind>() {{
+  private NamePool names;
+  private char[] nameBuffer; // holds mapped ASCII names while they are interned or written
+
+  private TokenBuffer tokens; // tokens being replayed by next(), if buffered
+  private int tokenIndex;
+  private int tokenCount;     // tokens returned by next()
+
+  // Construct the keyword table, indexed by the keyword's first char so an
+  // identifier can be checked in place without building a String for it
+  private static final TokenKind[][] keywords = new TokenKind[128][];
+  static {
     for (TokenKind token : TokenKind.values()) {
       String lexeme = token.defaultLexeme;
-      if (lexeme.length() > 0 && Character.isLetter(lexeme.charAt(0)) && ! lexeme.equals("ERROR"))
-        put(token.defaultLexeme, token);
+      if (lexeme.length() > 0 && Character.isLetter(lexeme.charAt(0)) && ! lexeme.equals("ERROR")) {
+        TokenKind[] candidates = keywords[lexeme.charAt(0)];
+        if (candidates == null) candidates = new TokenKind[] { token };
+        else {
+          candidates = Arrays.copyOf(candidates, candidates.length + 1);
+          candidates[candidates.length - 1] = token;
+        }
+        keywords[lexeme.charAt(0)] = candidates;
+      }
     }
-  }};
+  }
 
   // ---------- Constructors ----------
   public Scanner(String sourceFilename) throws ScannerException {
+    Reader in;
     try {
-      in = new LineNumberReader(new FileReader(sourceFilename));
+      in = new FileReader(sourceFilename);
     } catch (IOException e) {
       throw new ScannerException("Cannot open " + sourceFilename, e);
     }
-    lexeme = new StringBuilder();
-    nextLineNum = 1;
-    nextCharPos = 0;
+    try {
+      readSource(in, (int) Math.min(new File(sourceFilename).length(), Integer.MAX_VALUE - 8));
+    } catch (IOException e) {
+      throw new ScannerException("Cannot read " + sourceFilename, e);
+    } finally {
+      try { in.close(); } catch (IOException e) { /* nothing left to read */ }
+    }
+    start();
+  }
+
+  /**
+   * Scans the first sourceLength chars of an in-memory source. The array is
+   * not copied, so it must not be modified while the scanner is in use.
+   */
+  public Scanner(char[] source, int sourceLength) {
+    this.source = source;
+    this.sourceLength = sourceLength;
+    start();
+  }
+
+  // Scans source[start, end) of another scanner as if it were a whole file
+  // starting at a line beginning; line numbers are relative to the range
+  private Scanner(Scanner whole, int start, int end) {
+    this(whole, start, end, 1, 1);
+  }
+
+  // Scans source[start, end) of another scanner, starting between two tokens
+  // at the given line and char position
+  private Scanner(Scanner whole, int start, int end, int lineNum, int charPos) {
+    this.source = whole.source;
+    this.asciiSource = whole.asciiSource;
+    this.sourceLength = end;
+    this.pos = start;
+    this.names = whole.names;
+    start(lineNum, charPos);
+  }
+
+  private Scanner(ByteBuffer asciiSource) {
+    this.asciiSource = asciiSource;
+    this.sourceLength = asciiSource.limit();
+    start();
+  }
+
+  /**
+   * Returns a scanner that lexes the file straight out of a memory mapping,
+   * without decoding it into chars first. Only pure ASCII files can be read
+   * this way; anything else is scanned through the normal reader path.
+   */
+  public static Scanner newMappedScanner(String sourceFilename) throws ScannerException {
+    ByteBuffer mapped = null;
+    RandomAccessFile file = null;
+    try {
+      file = new RandomAccessFile(sourceFilename, "r");
+      FileChannel channel = file.getChannel();
+      if (channel.size() <= Integer.MAX_VALUE)
+        mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    } catch (IOException e) {
+      throw new ScannerException("Cannot map " + sourceFilename, e);
+    } finally {
+      try { if (file != null) file.close(); } catch (IOException e) { /* mapping stays valid */ }
+    }
+
+    if (mapped == null || !isAscii(mapped)) return new Scanner(sourceFilename);
+    return new Scanner(mapped);
+  }
+
+  private static boolean isAscii(ByteBuffer bytes) {
+    for (int i = 0, n = bytes.limit(); i < n; i++) {
+      if (bytes.get(i) < 0) return false;
+    }
+    return true;
+  }
+
+  // Reads the whole source into the char buffer in large chunks
+  private void readSource(Reader in, int sizeHint) throws IOException {
+    source = new char[Math.max(sizeHint, 16)];
+    sourceLength = 0;
+    int n;
+    while (true) {
+      if (sourceLength == source.length)
+        source = Arrays.copyOf(source, source.length * 2);
+      n = in.read(source, sourceLength, Math.min(READ_CHUNK_SIZE, source.length - sourceLength));
+      if (n < 0) break;
+      sourceLength += n;
+    }
+  }
+
+  private void start() {
+    start(1, 1);
+  }
+
+  private void start(int lineNum, int charPos) {
+    nextLineNum = lineNum;
+    nextCharPos = charPos - 1;
     nextChar = Integer.MAX_VALUE;
     readChar();
   }
 
   // ---------- Main work ----------
-  private void readChar() throws ScannerException {
+  private void readChar() {
     if (nextChar == '\n') {
       nextLineNum++;
       nextCharPos = 0;
     }
     nextCharPos++;
 
-    try {
-      nextChar = in.read();
-      lexeme.append((char) nextChar);
-    } catch (IOException e) {
-      throw new ScannerException("Cannot read next char at line=" + nextLineNum +
-                                 ", charPos=" + nextCharPos, e);
+    if (pos < sourceLength) {
+      nextChar = charAt(pos++);
+    } else {
+      nextChar = -1;
+      pos = sourceLength + 1;  // keep pos one past nextChar at end of input
     }
   }
 
@@ -69,7 +195,16 @@ public class Scanner {
    * subsequent access to those fields yield corresponding values for the
    * returned token.
    */
-  public TokenKind next() throws ScannerException {
+  public TokenKind next() {
+    tokenCount++;
+    if (tokens != null) {
+      if (++tokenIndex < tokens.size()) return replay(tokenIndex);
+      tokens = null;  // past the buffered EOF, carry on scanning
+    }
+    return scan();
+  }
+
+  private TokenKind scan() {
     // Strip comments and whitespace
     while (nextChar == '#' || Character.isWhitespace(nextChar)) {
       if (nextChar == '#') {
@@ -79,7 +214,9 @@ public class Scanner {
       }
     }
 
-    lexeme.setLength(0); lexeme.append((char) nextChar);
+    lexemeStart = pos - 1;
+    nameId = -1;
+    lexeme = null;
     tokenKind = TokenKind.ERROR;
     lineNum = nextLineNum;
     charPos = nextCharPos;
@@ -155,13 +292,13 @@ public class Scanner {
         break;
       case '"':
         tokenKind = TokenKind.STRING_LITERAL;
-        lexeme.setLength(0);                                            // remove opening quote
+        lexemeStart = pos;                                       // skip opening quote
         do {
           readChar();
         } while (nextChar != '"' && nextChar != -1);
 
-        if (nextChar == '"') lexeme.deleteCharAt(lexeme.length() - 1);  // remove ending quote
-        else { tokenKind = TokenKind.ERROR; shouldReadChar = false; }
+        lexemeEnd = pos - 1;                                     // skip ending quote
+        if (nextChar != '"') { tokenKind = TokenKind.ERROR; shouldReadChar = false; }
         break;
     }
 
@@ -180,19 +317,312 @@ public class Scanner {
         } while (Character.isLetterOrDigit(nextChar));
         shouldReadChar = false;
         // check for keyword
-        String identifier = lexeme.substring(0, lexeme.length() - 1);
-        tokenKind = keywords.get(identifier);
-        if (tokenKind == null) tokenKind = TokenKind.IDENT;
+        tokenKind = keyword(lexemeStart, pos - 1);
       }
     }
 
     // Get the next lookahead character
     if (shouldReadChar) readChar();
-    lexeme.deleteCharAt(lexeme.length() - 1);
+    if (tokenKind != TokenKind.STRING_LITERAL) lexemeEnd = pos - 1;
+
+    return tokenKind;
+  }
+
+  /**
+   * Lexes the rest of the source, up to and including EOF, into a packed
+   * TokenBuffer. Subsequent calls to next() then replay the buffered tokens
+   * instead of scanning, so the accessors (and getToken(), which returns a
+   * view on the buffer) allocate nothing per token.
+   */
+  public TokenBuffer bufferTokens() {
+    TokenBuffer buffer = new TokenBuffer(this, sourceLength / 4);
+    lexRest(buffer, true);
+
+    tokens = buffer;
+    tokenIndex = -1;
+    return buffer;
+  }
+
+  /**
+   * Same as bufferTokens(), but large sources are cut into chunks that are
+   * lexed at the same time on the common fork-join pool. Only a scanner that
+   * has not returned any token yet can be split; otherwise, or for small
+   * sources, this is just bufferTokens().
+   */
+  public TokenBuffer bufferTokensInParallel() {
+    ForkJoinPool pool = ForkJoinPool.commonPool();
+    int chunkSize = Math.max(MIN_LEX_CHUNK_SIZE, sourceLength / (4 * pool.getParallelism()));
+    return bufferTokensInParallel(pool, chunkSize);
+  }
+
+  /**
+   * Lexes the source in chunks of about chunkSize chars on the given pool.
+   *
+   * Chunks are only cut right after a newline, where the sequential scanner
+   * would be between tokens unless it is inside a string literal (no other
+   * token, and no comment, runs past a newline). A chunk that ends inside an
+   * unterminated string is lexed again together with the chunk after it, so
+   * the stitched tokens, including ERRORs and positions, are exactly the ones
+   * next() would have returned.
+   */
+  public TokenBuffer bufferTokensInParallel(ForkJoinPool pool, int chunkSize) {
+    if (tokenKind != null || tokens != null || sourceLength <= chunkSize || pool.getParallelism() < 2)
+      return bufferTokens();
+
+    List<Integer> bounds = new ArrayList<Integer>();
+    bounds.add(0);
+    for (int cut = chunkSize; cut < sourceLength; cut += chunkSize) {
+      while (cut < sourceLength && charAt(cut - 1) != '\n') cut++;
+      if (cut >= sourceLength) break;
+      bounds.add(cut);
+    }
+    bounds.add(sourceLength);
+
+    List<ChunkLexer> chunks = new ArrayList<ChunkLexer>();
+    for (int i = 0; i + 1 < bounds.size(); i++) {
+      chunks.add(new ChunkLexer(this, bounds.get(i), bounds.get(i + 1)));
+    }
+    for (ChunkLexer chunk : chunks) pool.execute(chunk);
+
+    TokenBuffer buffer = new TokenBuffer(this, sourceLength / 4);
+    int lineBase = 0;
+    int i = 0;
+    while (i < chunks.size()) {
+      int start = bounds.get(i);
+      int next = i + 1;
+      TokenBuffer part = chunks.get(i).join();
+      // a string that runs into the next chunk has to be lexed along with it
+      while (next < chunks.size() && endsInsideString(part, bounds.get(next))) {
+        next++;
+        part = new ChunkLexer(this, start, bounds.get(next)).compute();
+      }
+
+      boolean isLast = next == chunks.size();
+      int count = isLast ? part.size() : part.size() - 1;  // drop the chunk's own EOF
+      for (int t = 0; t < count; t++) {
+        TokenKind kind = part.getTokenKind(t);
+        int tokenStart = part.getLexemeStart(t);
+        int tokenEnd = tokenStart + part.getLexemeLength(t);
+        buffer.add(kind, tokenStart, tokenEnd, part.getLineNum(t) + lineBase, part.getCharPos(t),
+                   kind == TokenKind.IDENT ? intern(tokenStart, tokenEnd) : -1);
+      }
+      // the chunk ends on a newline, so its EOF sits on the first line after it
+      lineBase += part.getLineNum(part.size() - 1) - 1;
+      i = next;
+    }
+    for (; i < chunks.size(); i++) chunks.get(i).join();
+
+    // leave the scanner just past EOF, where next() would have left it
+    int eof = buffer.size() - 1;
+    pos = sourceLength + 1;
+    nextChar = -1;
+    nextLineNum = buffer.getLineNum(eof);
+    nextCharPos = buffer.getCharPos(eof) + 1;
+
+    tokens = buffer;
+    tokenIndex = -1;
+    return buffer;
+  }
+
+  private static boolean endsInsideString(TokenBuffer part, int chunkEnd) {
+    // Only an unterminated string can reach the newline the chunk ends on
+    if (part.size() < 2) return false;
+    int last = part.size() - 2;
+    return part.getLexemeStart(last) + part.getLexemeLength(last) == chunkEnd;
+  }
+
+  @SuppressWarnings("serial")
+  private static class ChunkLexer extends RecursiveTask<TokenBuffer> {
+    private final Scanner scanner;
+
+    ChunkLexer(Scanner whole, int start, int end) {
+      scanner = new Scanner(whole, start, end);
+    }
+
+    @Override
+    protected TokenBuffer compute() {
+      TokenBuffer part = new TokenBuffer(scanner, (scanner.sourceLength - scanner.pos) / 4);
+      scanner.lexRest(part, false);
+      return part;
+    }
+  }
+
+  private void lexRest(TokenBuffer buffer, boolean internNames) {
+    TokenKind kind;
+    do {
+      kind = scan();
+      buffer.add(kind, lexemeStart, lexemeEnd, lineNum, charPos, internNames ? getNameId() : -1);
+    } while (kind != TokenKind.EOF);
+  }
+
+  /**
+   * Returns the index of the current token in the buffer made by
+   * bufferTokens(). Only valid while the buffered tokens are replayed.
+   */
+  int getTokenIndex() {
+    return tokenIndex;
+  }
+
+  /**
+   * Goes back or ahead to the buffered token at index, as if next() had
+   * just returned it.
+   */
+  TokenKind seek(int index) {
+    tokenIndex = index;
+    return replay(index);
+  }
 
+  private TokenKind replay(int i) {
+    tokenKind = tokens.getTokenKind(i);
+    lexemeStart = tokens.getLexemeStart(i);
+    lexemeEnd = lexemeStart + tokens.getLexemeLength(i);
+    nameId = tokens.getNameId(i);
+    lexeme = null;
+    lineNum = tokens.getLineNum(i);
+    charPos = tokens.getCharPos(i);
     return tokenKind;
   }
 
+  /**
+   * Re-lexes the source of previous, a buffer holding every token up to EOF,
+   * after replacing removedLength chars at offset with inserted.
+   *
+   * Lexing restarts at the last token whose end (and the lookahead char the
+   * scanner looked at to end it) lies before the edit, and stops as soon as
+   * a token after the edit starts at the same place, and on the same char
+   * position, as a token of the old buffer. From there on the old tokens
+   * are reused, moved by the size of the edit.
+   *
+   * The place compared is where the scanner began the token. That is the
+   * lexeme start, less the opening quote of a STRING_LITERAL; an ERROR may
+   * be an unterminated string whose lexeme also starts after its quote, so
+   * relexing never stops on one (a"!x edited into b"!x would otherwise take
+   * the old ! for the new string).
+   */
+  static TokenEdit relex(TokenBuffer previous, int offset, int removedLength, String inserted) {
+    Scanner old = previous.getScanner();
+    if (offset < 0 || removedLength < 0 || offset + removedLength > old.sourceLength)
+      throw new ScannerException("Edit at " + offset + " removing " + removedLength +
+                                 " chars is outside the source (length " + old.sourceLength + ")");
+
+    int delta = inserted.length() - removedLength;
+    char[] chars = new char[old.sourceLength + delta];
+    old.copyChars(0, offset, chars, 0);
+    inserted.getChars(0, inserted.length(), chars, offset);
+    old.copyChars(offset + removedLength, old.sourceLength, chars, offset + inserted.length());
+
+    Scanner edited = new Scanner(chars, chars.length);
+    edited.setNamePool(old.getNamePool());
+    TokenBuffer tokens = new TokenBuffer(edited, previous.size() + 16);
+
+    // keep the tokens the edit cannot have touched
+    int restart = lastTokenBefore(previous, offset);
+    for (int i = 0; i < restart; i++) tokens.add(previous, i, 0, 0);
+
+    int start = 0, lineNum = 1, charPos = 1;
+    if (restart >= 0) {
+      start = tokenStart(previous, restart);
+      lineNum = previous.getLineNum(restart);
+      charPos = previous.getCharPos(restart);
+    }
+    Scanner region = new Scanner(edited, start, chars.length, lineNum, charPos);
+
+    int editEnd = offset + inserted.length();
+    int firstChanged = -1;
+    int oldIndex = Math.max(restart, 0);
+    TokenKind kind;
+    do {
+      kind = region.next();
+      int lexemeStart = region.lexemeStart;
+
+      if (lexemeStart >= editEnd) {
+        // find the old token that would start at the same place
+        while (oldIndex < previous.size() && previous.getLexemeStart(oldIndex) + delta < lexemeStart)
+          oldIndex++;
+        if (kind != TokenKind.ERROR && oldIndex < previous.size() &&
+            previous.getLexemeStart(oldIndex) + delta == lexemeStart &&
+            previous.getTokenKind(oldIndex) == kind && previous.getCharPos(oldIndex) == region.charPos) {
+          if (firstChanged < 0) firstChanged = tokens.size();
+          int newEnd = tokens.size();
+          int lineDelta = region.lineNum - previous.getLineNum(oldIndex);
+          for (int i = oldIndex; i < previous.size(); i++) tokens.add(previous, i, delta, lineDelta);
+          assert matchesFullScan(tokens, chars) : "relex at " + offset + " differs from a full scan";
+          return new TokenEdit(tokens, firstChanged, oldIndex, newEnd);
+        }
+      }
+
+      int index = tokens.size();
+      tokens.add(kind, lexemeStart, region.lexemeEnd, region.lineNum, region.charPos, region.getNameId());
+      if (firstChanged < 0 && !tokens.sameToken(index, previous, index)) firstChanged = index;
+    } while (kind != TokenKind.EOF);
+
+    if (firstChanged < 0) firstChanged = tokens.size();
+    assert matchesFullScan(tokens, chars) : "relex at " + offset + " differs from a full scan";
+    return new TokenEdit(tokens, firstChanged, previous.size(), tokens.size());
+  }
+
+  // Checked with -ea: relexed tokens must be the ones a scan of the whole
+  // edited source makes
+  private static boolean matchesFullScan(TokenBuffer tokens, char[] chars) {
+    Scanner whole = new Scanner(chars, chars.length);
+    whole.setNamePool(tokens.getScanner().getNamePool());
+    TokenBuffer expected = whole.bufferTokens();
+    if (expected.size() != tokens.size()) return false;
+    for (int i = 0; i < expected.size(); i++) {
+      if (!tokens.sameToken(i, expected, i) || tokens.getNameId(i) != expected.getNameId(i)) return false;
+    }
+    return true;
+  }
+
+  // Returns the index of the last token (other than an ERROR, whose start
+  // cannot be told from its lexeme) that the scanner finished before offset,
+  // or -1 if there is none
+  private static int lastTokenBefore(TokenBuffer tokens, int offset) {
+    int low = 0, high = tokens.size() - 1, found = -1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int end = tokens.getLexemeStart(mid) + tokens.getLexemeLength(mid);
+      if (tokens.getTokenKind(mid) == TokenKind.STRING_LITERAL) end++;  // closing quote
+      if (end < offset) { found = mid; low = mid + 1; }
+      else high = mid - 1;
+    }
+    while (found >= 0 && tokens.getTokenKind(found) == TokenKind.ERROR) found--;
+    return found;
+  }
+
+  private static int tokenStart(TokenBuffer tokens, int i) {
+    int start = tokens.getLexemeStart(i);
+    return tokens.getTokenKind(i) == TokenKind.STRING_LITERAL ? start - 1 : start;
+  }
+
+  private void copyChars(int start, int end, char[] dest, int destPos) {
+    if (asciiSource == null) {
+      System.arraycopy(source, start, dest, destPos, end - start);
+    } else {
+      for (int i = start; i < end; i++) dest[destPos++] = (char) asciiSource.get(i);
+    }
+  }
+
+  // Returns the keyword spelled by source[start, end), or IDENT if there is none
+  private TokenKind keyword(int start, int end) {
+    int first = charAt(start);
+    if (first >= keywords.length || keywords[first] == null) return TokenKind.IDENT;
+
+    int length = end - start;
+    for (TokenKind candidate : keywords[first]) {
+      String lexeme = candidate.defaultLexeme;
+      if (lexeme.length() != length) continue;
+      int i = 1;
+      while (i < length && lexeme.charAt(i) == charAt(start + i)) i++;
+      if (i == length) return candidate;
+    }
+    return TokenKind.IDENT;
+  }
+
+  private int charAt(int offset) {
+    return asciiSource == null ? source[offset] : asciiSource.get(offset);
+  }
+
   @Override
   public String toString() {
     return "(L" + getLineNum() + " C" + getCharPos() + ") " + getTokenKind() + getLexeme();
@@ -204,8 +634,103 @@ public class Scanner {
   }
 
   public String getLexeme() {
-    if (tokenKind == TokenKind.EOF) return "";
-    return lexeme.toString();
+    if (lexeme == null) {
+      if (tokenKind == TokenKind.IDENT && names != null) lexeme = names.getName(getNameId());
+      else lexeme = lexeme(tokenKind, lexemeStart, lexemeEnd);
+    }
+    return lexeme;
+  }
+
+  /**
+   * Writes the lexeme of the current token to out, straight from the source,
+   * without making a String for it.
+   */
+  public void writeLexeme(Writer out) throws IOException {
+    if (tokenKind == TokenKind.EOF) return;
+    int length = lexemeEnd - lexemeStart;
+    if (asciiSource == null) {
+      out.write(source, lexemeStart, length);
+    } else {
+      if (nameBuffer == null || nameBuffer.length < length) nameBuffer = new char[Math.max(length, 64)];
+      copyChars(lexemeStart, lexemeEnd, nameBuffer, 0);
+      out.write(nameBuffer, 0, length);
+    }
+  }
+
+  /**
+   * Returns the value of the current NUMBER token, read straight from the
+   * source. Like Integer.parseInt, it throws a NumberFormatException if the
+   * lexeme is not a number that fits in an int.
+   */
+  public int getNumber() {
+    return parseNumber(lexemeStart, lexemeEnd);
+  }
+
+  /**
+   * Returns the name pool id of the current token if it is an IDENT, or -1
+   * for any other kind of token.
+   */
+  public int getNameId() {
+    if (tokenKind != TokenKind.IDENT) return -1;
+    if (nameId < 0) nameId = intern(lexemeStart, lexemeEnd);
+    return nameId;
+  }
+
+  private int intern(int start, int end) {
+    if (names == null) names = new NamePool();
+    if (asciiSource == null) return names.intern(source, start, end);
+
+    int length = end - start;
+    if (nameBuffer == null || nameBuffer.length < length) nameBuffer = new char[Math.max(length, 64)];
+    for (int i = 0; i < length; i++) nameBuffer[i] = (char) asciiSource.get(start + i);
+    return names.intern(nameBuffer, 0, length);
+  }
+
+  /**
+   * Sets the pool that identifiers are interned into, so it can be shared
+   * with the rest of the compilation.
+   */
+  public void setNamePool(NamePool names) {
+    this.names = names;
+    nameId = -1;
+    lexeme = null;
+  }
+
+  public NamePool getNamePool() {
+    if (names == null) names = new NamePool();
+    return names;
+  }
+
+  // Makes the lexeme of a token other than an IDENT
+  String lexeme(TokenKind kind, int start, int end) {
+    if (kind == TokenKind.EOF) return "";
+    return slice(start, end);
+  }
+
+  int parseNumber(int start, int end) {
+    int value = 0;
+    for (int i = start; i < end; i++) {
+      int digit = Character.digit(charAt(i), 10);
+      if (digit < 0 || value > (Integer.MAX_VALUE - digit) / 10)
+        throw new NumberFormatException("For input string: \"" + slice(start, end) + "\"");
+      value = value * 10 + digit;
+    }
+    if (start == end) throw new NumberFormatException("For input string: \"\"");
+    return value;
+  }
+
+  String slice(int start, int end) {
+    if (asciiSource == null) return new String(source, start, end - start);
+    char[] chars = new char[end - start];
+    for (int i = 0; i < chars.length; i++) chars[i] = (char) asciiSource.get(start + i);
+    return new String(chars);
+  }
+
+  /**
+   * Returns the number of tokens next() has returned, buffered or not.
+   */
+  public int getTokenCount() {
+    return tokenCount;
   }
 
   public int getLineNum() {
@@ -217,6 +742,7 @@ public class Scanner {
   }
 
   public Token getToken() {
-    return new Token(getTokenKind(), getLexeme(), getLineNum(), getCharPos());
+    if (tokens != null) return tokens.getToken(tokenIndex);
+    return new Token(this, tokenKind, lexeme, lexemeStart, lexemeEnd, getNameId(), lineNum, charPos);
   }
 }
@@ -1,6 +1,7 @@
 
 
 
+import java.io.IOException;
 import java.util.ArrayList;
 
 /**
@@ -20,6 +21,7 @@ public class Symbol
 	}
 
 	private String name;
+	private int nameId = -1;
 	private Type type;
 	private Kind kind;
 	private String value;
@@ -47,17 +49,32 @@ public class Symbol
 	public String toString()
 	{
 		StringBuilder sb = new StringBuilder();
-		sb.append("N: ").append(name).append("  ");
-		sb.append("C: ").append(kind).append("  ");
+		try
+		{
+			writeTo(sb);
+		}
+		catch (IOException e)
+		{
+			throw new AssertionError(e);// a StringBuilder never throws
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Writes the same text as toString() to out, without building it first
+	 */
+	public void writeTo(Appendable out) throws IOException
+	{
+		out.append("N: ").append(name).append("  ");
+		out.append("C: ").append(kind.name()).append("  ");
 		if(type != null)
 		{
-			sb.append("T: ").append(type).append("  ");
+			out.append("T: ").append(type.toString()).append("  ");
 		}
 		if(value != null)
 		{
-			sb.append("V: ").append(value).append("  ");
+			out.append("V: ").append(value).append("  ");
 		}
-		return sb.toString();
 	}
 
 	// ----- Factory methods -----
@@ -94,12 +111,25 @@ public class Symbol
 		}
 	}
 
+	void setNameId(int nameId)
+	{
+		/**
+		 * Set by the SymbolTable once the name has been interned
+		 */
+		this.nameId = nameId;
+	}
+
 	// ----- Getters -----
 	public String getName()
 	{
 		return name;
 	}
 
+	public int getNameId()
+	{
+		return nameId;
+	}
+
 	public Type getType()
 	{
 		return type;
@@ -1,8 +1,7 @@
 
 
-import java.util.LinkedHashMap;
-import java.util.Map;
-import java.util.Stack;
+import java.io.IOException;
+import java.util.Arrays;
 
 /**
  * Represents the symbol table of the compiler.
@@ -12,12 +11,24 @@ public class SymbolTable
 	
 	/* parent scope of current table */
 	private SymbolTable parent;
-	/* symbols and names in current scope */
-	private Map<String, Symbol> table;
+	/* symbols in current scope, in the order they were added */
+	private Symbol[] symbols;
+	/* key of each symbol, its interned name and namespace */
+	private int[] keys;
+	private int size;
+	/* open addressing index of the symbols, by key (symbol + 1, 0 == empty) */
+	private int[] slots;
+	/* names shared by every scope of the table */
+	private NamePool names;
 	/* for getting the scope depth */
 	private int recursiondepth;
 
 	public SymbolTable()
+	{
+		this(new NamePool());
+	}
+
+	public SymbolTable(NamePool names)
 	{
 		/**
 		 * we want to be able to write the root so instead of looking for a null
@@ -27,8 +38,9 @@ public class SymbolTable
 		this(0);
 		// set the parent to the callers object
 		this.parent = null;
+		this.names = names;
 		// define a new scope for variables
-		this.table = new LinkedHashMap<String, Symbol>();
+		newTable();
 	}
 
 	public SymbolTable(int recursiondepth)
@@ -45,7 +57,15 @@ public class SymbolTable
 		 */
 		this(parent.recursiondepth + 1);
 		this.parent = parent;
-		this.table = new LinkedHashMap<String, Symbol>();
+		this.names = parent.names;
+		newTable();
+	}
+
+	private void newTable()
+	{
+		this.symbols = new Symbol[8];
+		this.keys = new int[8];
+		this.slots = new int[16];
 	}
 
 	public boolean addSymbol(Symbol s)
@@ -55,10 +75,13 @@ public class SymbolTable
 		 * Returns true on success or false if the symbol already exists in the
 		 * table.
 		 */
-		String realname = safeName(s.getName(), s.getKind());
-		Symbol symbol = table.get(realname);
-		if(symbol != null) { return false; }
-		table.put(realname, s);
+		if(s.getNameId() < 0)
+		{
+			s.setNameId(names.intern(s.getName()));
+		}
+		int key = safeKey(s.getNameId(), s.getKind());
+		if(find(key) != null) { return false; }
+		put(key, s);
 		return true;
 	}
 
@@ -69,13 +92,24 @@ public class SymbolTable
 		 * Returns the symbol with the given name and kind in the current scope,
 		 * or null if such a symbol does not exist.
 		 */
-		String sname = safeName(name, kind);
+		int nameId = names.lookup(name);
+		if(nameId < 0) { return null; }
+		return getSymbol(nameId, kind);
+	}
+
+	public Symbol getSymbol(int nameId, Symbol.Kind kind)
+	{
+		/**
+		 * Same as getSymbol(String, Kind) for a name already interned in the
+		 * NamePool, e.g. the id of an IDENT token
+		 */
+		int key = safeKey(nameId, kind);
 		SymbolTable p = this;
 		while (p != null)
 		{
-			if(p.table.get(sname) != null)
+			Symbol temp = p.find(key);
+			if(temp != null)
 			{
-				Symbol temp = p.table.get(sname);
 				return temp;
 			}
 			p = p.getParent();
@@ -83,6 +117,32 @@ public class SymbolTable
 		return null;
 	}
 
+	/**
+	 * Returns a copy of this scope, under the given parent scope, holding
+	 * only the first count symbols added to it: the scope as it was part
+	 * way through the parse.
+	 */
+	SymbolTable copyOf(int count, SymbolTable parent)
+	{
+		SymbolTable copy = parent == null ? new SymbolTable(names) : new SymbolTable(parent);
+		for (int i = 0; i < count; i++)
+		{
+			copy.put(keys[i], symbols[i]);
+		}
+		return copy;
+	}
+
+	// the number of symbols in this scope, not counting its parents
+	int size()
+	{
+		return size;
+	}
+
+	public NamePool getNamePool()
+	{
+		return names;
+	}
+
 	public SymbolTable newScope()
 	{
 		/**
@@ -118,60 +178,139 @@ public class SymbolTable
 		 * Print the symbol table according to insertion order i.e parent of the
 		 * program main is first and then proceeding functions are after
 		 */
-		StringBuilder res = new StringBuilder(
-				"***** Symbol Table Contents *****\n");
+		StringBuilder res = new StringBuilder();
+		try
+		{
+			writeTo(res, Integer.MAX_VALUE);
+		}
+		catch (IOException e)
+		{
+			throw new AssertionError(e);// a StringBuilder never throws
+		}
+		return res.toString();
+	}
 
-		Stack<SymbolTable> parents = new Stack<SymbolTable>();
+	public void writeTo(Appendable out, int limit) throws IOException
+	{
+		/**
+		 * Writes the same text as toString() to out, symbol by symbol, but
+		 * only the first limit symbols of each scope, then a line counting
+		 * the ones left out. What an error report costs then no longer grows
+		 * with the size of the program
+		 */
+		out.append("***** Symbol Table Contents *****\n");
+		writeScopes(out, limit);
+	}
 
-		SymbolTable p = this.parent;
-		// push the current symboltable as the first
-		parents.push(this);
-		while (p != null)
+	private void writeScopes(Appendable out, int limit) throws IOException
+	{
+		/**
+		 * the parents first, then this scope, with an arrow per parent to
+		 * show what scope the variables are in
+		 */
+		if(parent != null)
 		{
-			// get all the rest of the parent symboltables
-			// into the stack
-			parents.push(p);
-			p = p.getParent();
+			parent.writeScopes(out, limit);
+		}
+		int shown = Math.min(size, limit);
+		for (int i = 0; i < shown; i++)
+		{
+			writeIndent(out);
+			symbols[i].writeTo(out);
+			out.append('\n');
+		}
+		if(shown < size)
+		{
+			writeIndent(out);
+			out.append("... ").append(Integer.toString(size - shown))
+					.append(" more\n");
 		}
+	}
 
-		String arrow = "-->";
-		int depth = 0;
-		while (!parents.isEmpty())
+	private void writeIndent(Appendable out) throws IOException
+	{
+		for (int i = 0; i < recursiondepth; i++)
 		{
-			p = parents.pop();
-			String indent = new String();
-			// for each of the depth add arrows to
-			// show what scope the variables are in
-			for (int i = 0; i < depth; i++)
-			{
-				indent += arrow;
-			}
-			// append the scoping arrows
-			for (Symbol s : p.table.values())
+			out.append("-->");
+		}
+	}
+
+	private Symbol find(int key)
+	{
+		/**
+		 * Returns the symbol with the given key in this scope alone, or null
+		 */
+		int mask = slots.length - 1;
+		for (int i = hash(key) & mask;; i = (i + 1) & mask)
+		{
+			int index = slots[i] - 1;
+			if(index < 0) { return null; }
+			if(keys[index] == key) { return symbols[index]; }
+		}
+	}
+
+	private void put(int key, Symbol s)
+	{
+		/**
+		 * Adds a symbol whose key is not in this scope yet, keeping the slots
+		 * at most half full
+		 */
+		if(size == symbols.length)
+		{
+			symbols = Arrays.copyOf(symbols, size * 2);
+			keys = Arrays.copyOf(keys, size * 2);
+		}
+		symbols[size] = s;
+		keys[size] = key;
+		size++;
+		if(size * 2 > slots.length)
+		{
+			slots = new int[slots.length * 2];
+			for (int i = 0; i < size; i++)
 			{
-				res.append(indent + s.toString() + "\n");
+				insertSlot(i);
 			}
-			depth++;
 		}
-		// System.err.println(res);
-		return res.toString();
+		else
+		{
+			insertSlot(size - 1);
+		}
+	}
+
+	private void insertSlot(int index)
+	{
+		int mask = slots.length - 1;
+		int i = hash(keys[index]) & mask;
+		while (slots[i] != 0)
+		{
+			i = (i + 1) & mask;
+		}
+		slots[i] = index + 1;
+	}
+
+	private static int hash(int key)
+	{
+		// consecutive name ids would otherwise fill runs of adjacent slots
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
 	}
 
-	private String safeName(String string, Symbol.Kind kind)
+	private static int safeKey(int nameId, Symbol.Kind kind)
 	{
 		/**
 		 * For safe searching of symbols in the table we need to make sure
 		 * symbols are properly identified so if a symbol has both a
-		 * procedure/var we need to have a better key to search for
+		 * procedure/var we need to have a better key to search for. The
+		 * lowest bit of the key holds the namespace.
 		 */
 
 		if(kind == Symbol.Kind.PROCEDURE)
 		{
-			return string + "::procedure";// if symbol is a procedure
+			return (nameId << 1) | 1;// if symbol is a procedure
 		}
 		else
 		{
-			return string + "::var";// if symbol is anything but a procedure
+			return nameId << 1;// if symbol is anything but a procedure
 		}
 	}
 }
@@ -1,34 +1,99 @@
 
 /**
  * Represents a full token.
+ *
+ * A token handed out by a Scanner keeps a reference to the scanner's source
+ * and makes its lexeme String the first time it is asked for; a token that
+ * comes from a TokenBuffer is only a view on its index in the buffer.
  */
 public class Token {
 
   private TokenKind tokenKind;
   private String lexeme;
+  private int nameId;
   private int lineNum;
   private int charPos;
 
+  private Scanner scanner;
+  private int lexemeStart;
+  private int lexemeEnd;
+
+  private TokenBuffer tokens;
+  private int index;
+
   public Token(TokenKind tokenKind, String lexeme, int lineNum, int charPos) {
+    this(tokenKind, lexeme, -1, lineNum, charPos);
+  }
+
+  public Token(TokenKind tokenKind, String lexeme, int nameId, int lineNum, int charPos) {
     this.tokenKind = tokenKind;
     this.lexeme = lexeme;
+    this.nameId = nameId;
     this.lineNum = lineNum;
     this.charPos = charPos;
   }
 
+  Token(Scanner scanner, TokenKind tokenKind, String lexeme, int lexemeStart, int lexemeEnd,
+        int nameId, int lineNum, int charPos) {
+    this(tokenKind, lexeme, nameId, lineNum, charPos);
+    this.scanner = scanner;
+    this.lexemeStart = lexemeStart;
+    this.lexemeEnd = lexemeEnd;
+  }
+
+  public Token(TokenBuffer tokens, int index) {
+    this.tokens = tokens;
+    this.index = index;
+    this.tokenKind = tokens.getTokenKind(index);
+  }
+
+  /**
+   * Moves a view to the token at index in its buffer, for one view that is
+   * used as a cursor instead of a view per token.
+   */
+  void moveTo(int index) {
+    this.index = index;
+    this.tokenKind = tokens.getTokenKind(index);
+    this.lexeme = null;
+  }
+
   public TokenKind getTokenKind() {
     return tokenKind;
   }
 
   public String getLexeme() {
+    if (lexeme == null) {
+      if (tokens != null) lexeme = tokens.getLexeme(index);
+      else if (nameId >= 0) lexeme = scanner.getNamePool().getName(nameId);
+      else if (scanner != null) lexeme = scanner.lexeme(tokenKind, lexemeStart, lexemeEnd);
+    }
     return lexeme;
   }
 
+  /**
+   * Returns the value of a NUMBER token without going through its lexeme.
+   */
+  public int getNumber() {
+    if (tokens != null) return tokens.getNumber(index);
+    if (scanner != null) return scanner.parseNumber(lexemeStart, lexemeEnd);
+    return Integer.parseInt(lexeme);
+  }
+
+  /**
+   * Returns the NamePool id of an IDENT token, or -1 for other tokens.
+   */
+  public int getNameId() {
+    if (tokens != null) return tokens.getNameId(index);
+    return nameId;
+  }
+
   public int getLineNum() {
+    if (tokens != null) return tokens.getLineNum(index);
     return lineNum;
   }
 
   public int getCharPos() {
+    if (tokens != null) return tokens.getCharPos(index);
     return charPos;
   }
 }
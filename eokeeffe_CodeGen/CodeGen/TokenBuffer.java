@@ -0,0 +1,129 @@
+
+import java.util.Arrays;
+
+/**
+ * The tokens of a whole source file, packed into parallel primitive arrays.
+ *
+ * Token i is described by its TokenKind ordinal, the offset and length of
+ * its lexeme in the source, its line number and char position and, for an
+ * IDENT, its NamePool id. Nothing is allocated per token to buffer or
+ * replay the tokens, and lexeme Strings are made on demand from the
+ * Scanner's source. getToken() makes a new Token view on each call, so the
+ * parser only asks for the tokens it keeps or reports an error on, and
+ * reads the others through the accessors by index.
+ */
+public class TokenBuffer {
+
+  private static final TokenKind[] KINDS = TokenKind.values();
+
+  private final Scanner scanner;  // holds the source the lexemes point into
+
+  private byte[] kinds;
+  private int[] starts;
+  private int[] lengths;
+  private int[] lineNums;
+  private int[] charPositions;
+  private int[] nameIds;
+  private int size;
+
+  TokenBuffer(Scanner scanner, int capacity) {
+    this.scanner = scanner;
+    capacity = Math.max(capacity, 16);
+    kinds = new byte[capacity];
+    starts = new int[capacity];
+    lengths = new int[capacity];
+    lineNums = new int[capacity];
+    charPositions = new int[capacity];
+    nameIds = new int[capacity];
+  }
+
+  void add(TokenKind kind, int start, int end, int lineNum, int charPos, int nameId) {
+    if (size == kinds.length) {
+      int capacity = size * 2;
+      kinds = Arrays.copyOf(kinds, capacity);
+      starts = Arrays.copyOf(starts, capacity);
+      lengths = Arrays.copyOf(lengths, capacity);
+      lineNums = Arrays.copyOf(lineNums, capacity);
+      charPositions = Arrays.copyOf(charPositions, capacity);
+      nameIds = Arrays.copyOf(nameIds, capacity);
+    }
+    kinds[size] = (byte) kind.ordinal();
+    starts[size] = start;
+    lengths[size] = end - start;
+    lineNums[size] = lineNum;
+    charPositions[size] = charPos;
+    nameIds[size] = nameId;
+    size++;
+  }
+
+  // Appends token i of other, moved by offsetDelta chars and lineDelta lines
+  void add(TokenBuffer other, int i, int offsetDelta, int lineDelta) {
+    add(other.getTokenKind(i), other.starts[i] + offsetDelta, other.starts[i] + other.lengths[i] + offsetDelta,
+        other.lineNums[i] + lineDelta, other.charPositions[i], other.nameIds[i]);
+  }
+
+  // Tells whether token i is token j of other, at the same place
+  boolean sameToken(int i, TokenBuffer other, int j) {
+    return j < other.size && kinds[i] == other.kinds[j] && starts[i] == other.starts[j]
+        && lengths[i] == other.lengths[j] && lineNums[i] == other.lineNums[j]
+        && charPositions[i] == other.charPositions[j];
+  }
+
+  Scanner getScanner() {
+    return scanner;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  // ---------- Accessors for token i ----------
+  public TokenKind getTokenKind(int i) {
+    return KINDS[kinds[i]];
+  }
+
+  public int getLexemeStart(int i) {
+    return starts[i];
+  }
+
+  public int getLexemeLength(int i) {
+    return lengths[i];
+  }
+
+  public int getLineNum(int i) {
+    return lineNums[i];
+  }
+
+  public int getCharPos(int i) {
+    return charPositions[i];
+  }
+
+  public int getNameId(int i) {
+    return nameIds[i];
+  }
+
+  public String getLexeme(int i) {
+    TokenKind kind = getTokenKind(i);
+    if (kind == TokenKind.IDENT) return scanner.getNamePool().getName(nameIds[i]);
+    return scanner.lexeme(kind, starts[i], starts[i] + lengths[i]);
+  }
+
+  public int getNumber(int i) {
+    return scanner.parseNumber(starts[i], starts[i] + lengths[i]);
+  }
+
+  // a new view on token i, see Token.moveTo() for reusing one
+  public Token getToken(int i) {
+    return new Token(this, i);
+  }
+
+  /**
+   * Re-lexes only the part of the source around an edit that replaces
+   * removedLength chars at offset with inserted. The returned TokenEdit
+   * holds the tokens of the edited source and the range of token indices
+   * that changed.
+   */
+  public TokenEdit relex(int offset, int removedLength, String inserted) {
+    return Scanner.relex(this, offset, removedLength, inserted);
+  }
+}
@@ -0,0 +1,44 @@
+
+/**
+ * The outcome of re-lexing a TokenBuffer after an edit of its source.
+ *
+ * Tokens [firstChanged, oldEnd) of the old buffer were replaced by tokens
+ * [firstChanged, newEnd) of the new one. Tokens before firstChanged are
+ * untouched and tokens after the changed range are the old ones, moved by
+ * the size of the edit.
+ */
+public class TokenEdit {
+
+  private TokenBuffer tokens;
+  private int firstChanged;
+  private int oldEnd;
+  private int newEnd;
+
+  public TokenEdit(TokenBuffer tokens, int firstChanged, int oldEnd, int newEnd) {
+    this.tokens = tokens;
+    this.firstChanged = firstChanged;
+    this.oldEnd = oldEnd;
+    this.newEnd = newEnd;
+  }
+
+  public TokenBuffer getTokens() {
+    return tokens;
+  }
+
+  public int getFirstChanged() {
+    return firstChanged;
+  }
+
+  public int getOldEnd() {
+    return oldEnd;
+  }
+
+  public int getNewEnd() {
+    return newEnd;
+  }
+
+  @Override
+  public String toString() {
+    return "changed tokens [" + firstChanged + ", " + oldEnd + ") -> [" + firstChanged + ", " + newEnd + ")";
+  }
+}
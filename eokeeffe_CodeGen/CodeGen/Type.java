@@ -1,4 +1,20 @@
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
 
+/**
+ * The types of the language. Types are hash-consed: the factory methods
+ * return the one instance of each type, so two types are equal exactly
+ * when they are the same object and can be compared with ==. Each type
+ * also knows its array arity and the primitive type at the bottom of it.
+ *
+ * The four primitive types are constants. Array types are only weakly held
+ * by their base type, so a long-running compile server does not keep every
+ * array type of every program it compiled; an array type stays the one
+ * instance for as long as anything refers to it.
+ */
 public class Type {
 
   private static final Type INT = new PrimitiveType("int");
@@ -6,48 +22,91 @@ public class Type {
   private static final Type STRING = new PrimitiveType("string");
   private static final Type VOID = new PrimitiveType("void");
 
-  private Type() {}
+  // the number of array levels, 0 for a primitive type
+  private final int arity;
+  // the primitive type under every array level, this for a primitive type
+  private final Type elementType;
+  // the array types of this base type, by dimension, and the references
+  // to the collected ones, to be removed
+  private final Map<Integer, ArrayTypeReference> arrayTypes = new HashMap<Integer, ArrayTypeReference>();
+  private final ReferenceQueue<ArrayType> collected = new ReferenceQueue<ArrayType>();
 
+  private Type(int arity, Type elementType) {
+    this.arity = arity;
+    this.elementType = elementType == null ? this : elementType;
+  }
+
+  // Returns the built-in primitive type called typeString, or null
   public static Type getType(String typeString)
   {
-	  if(typeString.equals(Type.INT))
+	  if(typeString.equals(Type.INT.toString()))
 	  {
 		  return Type.INT;
 	  }
-	  else if(typeString.equals(Type.CHAR))
+	  else if(typeString.equals(Type.CHAR.toString()))
 	  {
 		  return Type.CHAR;
-	  } 
-	  else if(typeString.equals(Type.STRING))
+	  }
+	  else if(typeString.equals(Type.STRING.toString()))
 	  {
 		  return Type.STRING;
 	  }
-	  else if(typeString.equals(Type.VOID))
+	  else if(typeString.equals(Type.VOID.toString()))
 	  {
 		  return Type.VOID;
 	  }
 	  return null;
   }
-  
+
   public static Type newPrimitiveType(String typeName) {
-    Type res;
-    if (typeName.equals("int")){ res = INT;}
-    else if (typeName.equals("char")) {res = CHAR;}
-    else if (typeName.equals("string")) {res = STRING;}
-    else if (typeName.equals("void")) {res = VOID;}
-    else {res = new PrimitiveType(typeName);}
+    Type res = getType(typeName);
+    if (res == null) {
+      throw new IllegalArgumentException("no primitive type " + typeName);
+    }
     return res;
   }
 
   public static Type newArrayType(Type baseType, int dimension) {
-    return new ArrayType(baseType, dimension);
+    synchronized (baseType.arrayTypes) {
+      Reference<? extends ArrayType> gone;
+      while ((gone = baseType.collected.poll()) != null) {
+        baseType.arrayTypes.remove(((ArrayTypeReference) gone).dimension, gone);
+      }
+      ArrayTypeReference ref = baseType.arrayTypes.get(dimension);
+      ArrayType res = ref == null ? null : ref.get();
+      if (res == null) {
+        res = new ArrayType(baseType, dimension);
+        baseType.arrayTypes.put(dimension, new ArrayTypeReference(res, baseType.collected));
+      }
+      return res;
+    }
+  }
+
+  private static class ArrayTypeReference extends WeakReference<ArrayType> {
+    private final int dimension;
+
+    ArrayTypeReference(ArrayType type, ReferenceQueue<ArrayType> queue) {
+      super(type, queue);
+      this.dimension = type.dim();
+    }
+  }
+
+  // the number of array levels, 0 for a primitive type
+  public int getArity() {
+    return arity;
+  }
+
+  // the primitive type under every array level, or this type if it is one
+  public Type getElementType() {
+    return elementType;
   }
 
   // ---------- PrimitiveType static inner class ----------
   	public  static class PrimitiveType extends Type {
     private String name;
 
-    public PrimitiveType(String name) {
+    private PrimitiveType(String name) {
+      super(0, null);
       this.name = name;
     }
 
@@ -61,10 +120,13 @@ public class Type {
   	public static class ArrayType extends Type {
     private Type baseType;
     private int dimension;
+    private String name;
 
-    public ArrayType(Type baseType, int dimension) {
+    private ArrayType(Type baseType, int dimension) {
+      super(baseType.getArity() + 1, baseType.getElementType());
       this.baseType = baseType;
       this.dimension = dimension;
+      this.name = "array " + dimension + " of " + baseType.toString();
     }
     public Type getBaseType()
     {
@@ -76,8 +138,8 @@ public class Type {
     }
     @Override
     public String toString() {
-      return "array " + dimension + " of " + baseType.toString();
+      return name;
     }
   }
-  
+
  }
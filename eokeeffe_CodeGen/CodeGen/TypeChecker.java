@@ -0,0 +1,700 @@
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+
+/**
+ * The type checking pass over the Ast.
+ *
+ * Expressions are visited in source order, which the deep string check
+ * depends on, and each returns a Node carrying its type. The first error
+ * found is reported through Parser.printError, with the parser's current
+ * scope, and ends the pass.
+ */
+public class TypeChecker implements Ast.Visitor<Node> {
+
+	// reports the errors, with its current scope
+	private Parser parser;
+	// for doing deep expr checking with strings
+	private boolean stringPresent = false;
+	// the view on the token of a compact tree node being checked, reused
+	// for every node of cursorTree
+	private Token cursor;
+	private AstArena cursorTree;
+
+	public TypeChecker(Parser parser) {
+		this.parser = parser;
+	}
+
+	public void check(Ast node) throws ParserException {
+		node.accept(this);
+	}
+
+	/**
+	 * Checks node n of a compact tree, the same way as the Ast it stands for.
+	 */
+	public void check(AstArena tree, int n) throws ParserException {
+		visit(tree, n);
+	}
+
+	// ---------- Program structure ----------
+	@Override
+	public Node visit(Ast.Program node) throws ParserException {
+		for (Ast.Declaration declaration : node.getDeclarations()) {
+			declaration.accept(this);
+		}
+		for (Ast.ProcedureDeclaration procedure : node.getProcedures()) {
+			procedure.accept(this);
+		}
+		return node.getMain().accept(this);
+	}
+
+	@Override
+	public Node visit(Ast.Body node) throws ParserException {
+		for (Ast.Declaration declaration : node.getDeclarations()) {
+			declaration.accept(this);
+		}
+		for (Ast.ProcedureDeclaration procedure : node.getProcedures()) {
+			procedure.accept(this);
+		}
+		statements(node.getStatements());
+		return null;
+	}
+
+	@Override
+	public Node visit(Ast.ProcedureDeclaration node) throws ParserException {
+		return node.getBody().accept(this);
+	}
+
+	// declarations are checked by the parser as the symbols are declared
+	@Override
+	public Node visit(Ast.ConstDeclaration node) {
+		return null;
+	}
+
+	@Override
+	public Node visit(Ast.VarDeclaration node) {
+		return null;
+	}
+
+	// ---------- Statements ----------
+	private void statements(List<Ast.Statement> statements) throws ParserException {
+		ParserException first = null;
+		for (Ast.Statement statement : statements) {
+			try {
+				statement.accept(this);
+			} catch (ParserException e) {
+				first = keepChecking(first, e);
+			}
+		}
+		if (first != null) {
+			throw first;
+		}
+	}
+
+	// With error recovery on, an error in one statement (or condition) does
+	// not stop the statements after it from being checked: the error is
+	// already recorded, and the first one is thrown once the enclosing
+	// statements have all been checked. Without it e is rethrown.
+	private ParserException keepChecking(ParserException first, ParserException e)
+			throws ParserException {
+		parser.checkRecoverable(e);
+		stringPresent = false;
+		return first == null ? e : first;
+	}
+
+	@Override
+	public Node visit(Ast.Assignment node) throws ParserException {
+		// reset each time for an assignement
+		stringPresent = false;
+		Node lhs = node.getTarget().accept(this);
+		if (node.getValue() != null) {
+			Node rhs = node.getValue().accept(this);
+			assignementExprCheck(lhs, node.getOp(), rhs);
+		} else {
+			assignementLiteralCheck(lhs, node.getOp());
+		}
+		stringPresent = false;
+		return null;
+	}
+
+	@Override
+	public Node visit(Ast.Input node) throws ParserException {
+		ioCheck(node.getKeyword(), node.getParameters());
+		return null;
+	}
+
+	@Override
+	public Node visit(Ast.Output node) throws ParserException {
+		ioCheck(node.getKeyword(), node.getParameters());
+		return null;
+	}
+
+	@Override
+	public Node visit(Ast.IfStatement node) throws ParserException {
+		ParserException first = null;
+		try {
+			condition(node.getCondition());
+		} catch (ParserException e) {
+			first = keepChecking(first, e);
+		}
+		try {
+			statements(node.getThenStatements());
+		} catch (ParserException e) {
+			first = keepChecking(first, e);
+		}
+		if (node.getElseStatements() != null) {
+			try {
+				statements(node.getElseStatements());
+			} catch (ParserException e) {
+				first = keepChecking(first, e);
+			}
+		}
+		if (first != null) {
+			throw first;
+		}
+		return null;
+	}
+
+	@Override
+	public Node visit(Ast.WhileStatement node) throws ParserException {
+		ParserException first = null;
+		try {
+			condition(node.getCondition());
+		} catch (ParserException e) {
+			first = keepChecking(first, e);
+		}
+		try {
+			statements(node.getStatements());
+		} catch (ParserException e) {
+			first = keepChecking(first, e);
+		}
+		if (first != null) {
+			throw first;
+		}
+		return null;
+	}
+
+	@Override
+	public Node visit(Ast.ReturnStatement node) throws ParserException {
+		Node expr = node.getValue().accept(this);
+		// do the type check on func symbol type and expr type
+		returnCheck(node.getProcedure(), expr, node.getKeyword());
+		stringPresent = false;
+		return null;
+	}
+
+	@Override
+	public Node visit(Ast.ProcedureStatement node) throws ParserException {
+		node.getCall().accept(this);
+		return null;
+	}
+
+	private void condition(Ast.Condition node) throws ParserException {
+		Node lhs = node.getLhs().accept(this);
+		Node rhs = node.getRhs().accept(this);
+		// type check the inputs
+		conditionCheck(lhs, node.getOp(), rhs);
+		stringPresent = false;
+	}
+
+	// ---------- Expressions ----------
+	@Override
+	public Node visit(Ast.Selector node) throws ParserException {
+		Symbol id = node.getSymbol();
+		Node lhs = new Node(id.getName(), id.getType());
+		int arity = 0;// arity of an array ident
+		for (Ast.Expression index : node.getIndices()) {
+			Node rhs = index.accept(this);
+			arity = selectorCheck(lhs, rhs, id, node.getIdent(), arity);
+			if (arity == getArrayArity(id.getType())) {
+				// turn the lhs node type into the base type
+				lhs = new Node(id.getName(), getArrayBaseType(id.getType()));
+			} else if (arity > getArrayArity(id.getType())) {
+				// using to much arity so set back to full type
+				lhs = new Node(id.getName(), id.getType());
+			}
+		}
+		stringPresent = false;
+		return lhs;
+	}
+
+	@Override
+	public Node visit(Ast.Dereference node) throws ParserException {
+		return node.getSelector().accept(this);
+	}
+
+	@Override
+	public Node visit(Ast.NumberLiteral node) {
+		return new Node(Type.newPrimitiveType("int"));
+	}
+
+	@Override
+	public Node visit(Ast.ProcedureCall node) throws ParserException {
+		Symbol proc = node.getProcedure();
+		Node call = new Node(proc.getName(), proc.getType());
+		if (!node.getArguments().isEmpty()) {
+			funcCheck(proc, proc.getArguements(), node.getArguments(), node.getIdent());
+		}
+		return call;
+	}
+
+	@Override
+	public Node visit(Ast.BinaryExpression node) throws ParserException {
+		// the type of a term or expression is the type of its first factor
+		Node lhs = node.getLhs().accept(this);
+		Node rhs = node.getRhs().accept(this);
+		if (NonTerminal.OP1.inFirstSet(node.getOp().getTokenKind())) {
+			termCheck(lhs, rhs, node.getOp());
+		} else {
+			expressionCheck(lhs, rhs, node.getOp());
+		}
+		return lhs;
+	}
+
+	// ---------- Compact trees ----------
+	private Node visit(AstArena tree, int n) throws ParserException {
+		switch (tree.getKind(n)) {
+		case AstArena.PROGRAM:
+		case AstArena.PROCEDURE:
+			for (int child = tree.getFirstChild(n); child >= 0; child = tree.getNextSibling(child)) {
+				visit(tree, child);
+			}
+			return null;
+		case AstArena.BODY:
+		case AstArena.BLOCK:
+		case AstArena.IF:
+		case AstArena.WHILE: {
+			// the statements, and the condition and blocks of an if or while,
+			// are all checked before the first error is thrown
+			ParserException first = null;
+			for (int child = tree.getFirstChild(n); child >= 0; child = tree.getNextSibling(child)) {
+				try {
+					visit(tree, child);
+				} catch (ParserException e) {
+					first = keepChecking(first, e);
+				}
+			}
+			if (first != null) {
+				throw first;
+			}
+			return null;
+		}
+		case AstArena.ASSIGNMENT: {
+			stringPresent = false;
+			Node lhs = visit(tree, tree.getTarget(n));
+			int value = tree.getValue(n);
+			if (tree.getKind(value) != AstArena.STRING_LITERAL) {
+				Node rhs = visit(tree, value);
+				assignementExprCheck(lhs, token(tree, n), rhs);
+			} else {
+				assignementLiteralCheck(lhs, token(tree, n));
+			}
+			stringPresent = false;
+			return null;
+		}
+		case AstArena.INPUT:
+		case AstArena.OUTPUT:
+			ioCheck(token(tree, n), names(tree, n));
+			return null;
+		case AstArena.CONDITION: {
+			Node lhs = visit(tree, tree.getLhs(n));
+			Node rhs = visit(tree, tree.getRhs(n));
+			conditionCheck(lhs, token(tree, n), rhs);
+			stringPresent = false;
+			return null;
+		}
+		case AstArena.RETURN: {
+			Node expr = visit(tree, tree.getValue(n));
+			returnCheck(tree.getSymbol(n), expr, token(tree, n));
+			stringPresent = false;
+			return null;
+		}
+		case AstArena.PROCEDURE_STATEMENT:
+		case AstArena.DEREFERENCE:
+			return visit(tree, tree.getFirstChild(n));
+		case AstArena.SELECTOR: {
+			Symbol id = tree.getSymbol(n);
+			Node lhs = new Node(id.getName(), id.getType());
+			int arity = 0;// arity of an array ident
+			for (int index = tree.getFirstChild(n); index >= 0; index = tree.getNextSibling(index)) {
+				Node rhs = visit(tree, index);
+				arity = selectorCheck(lhs, rhs, id, token(tree, n), arity);
+				if (arity == getArrayArity(id.getType())) {
+					lhs = new Node(id.getName(), getArrayBaseType(id.getType()));
+				} else if (arity > getArrayArity(id.getType())) {
+					lhs = new Node(id.getName(), id.getType());
+				}
+			}
+			stringPresent = false;
+			return lhs;
+		}
+		case AstArena.NUMBER:
+			return new Node(Type.newPrimitiveType("int"));
+		case AstArena.CALL: {
+			Symbol proc = tree.getSymbol(n);
+			Node call = new Node(proc.getName(), proc.getType());
+			if (tree.getFirstChild(n) >= 0) {
+				funcCheck(proc, proc.getArguements(), names(tree, n), token(tree, n));
+			}
+			return call;
+		}
+		case AstArena.BINARY: {
+			Node lhs = visit(tree, tree.getLhs(n));
+			Node rhs = visit(tree, tree.getRhs(n));
+			if (NonTerminal.OP1.inFirstSet(tree.getTokenKind(n))) {
+				termCheck(lhs, rhs, token(tree, n));
+			} else {
+				expressionCheck(lhs, rhs, token(tree, n));
+			}
+			return lhs;
+		}
+		default:
+			// declarations are checked by the parser as the symbols are declared
+			return null;
+		}
+	}
+
+	// The token of node n, for a check to report an error on. Only valid
+	// until the next call, which moves the same view.
+	private Token token(AstArena tree, int n) {
+		if (cursorTree != tree) {
+			cursorTree = tree;
+			cursor = tree.getToken(n);
+		} else {
+			cursor.moveTo(tree.getTokenIndex(n));
+		}
+		return cursor;
+	}
+
+	// the symbols of the NAME children of n
+	private static List<Symbol> names(AstArena tree, int n) {
+		List<Symbol> names = new ArrayList<Symbol>();
+		for (int child = tree.getFirstChild(n); child >= 0; child = tree.getNextSibling(child)) {
+			names.add(tree.getSymbol(child));
+		}
+		return names;
+	}
+
+	// ---------- Type Instance methods ----------------/
+	// Check the instance is what is being looked for //
+	public static boolean arrayInstance(Type t)
+	{
+		if(t instanceof Type.ArrayType) { return true; }
+		return false;
+	}
+
+	public static boolean primInstance(Type t)
+	{
+		if(t instanceof Type.PrimitiveType) { return true; }
+		return false;
+	}
+
+	public static boolean charInstance(Type t)
+	{
+		if(t == Type.newPrimitiveType("char")) { return true; }
+		return false;
+	}
+
+	public static boolean intInstance(Type t)
+	{
+		if(t == Type.newPrimitiveType("int")) { return true; }
+		return false;
+	}
+
+	public static boolean stringInstance(Type t)
+	{
+		if(t == Type.newPrimitiveType("string")) { return true; }
+		return false;
+	}
+
+	public static Type getArrayBaseType(Type t)
+	{
+		/**
+		 * The primitive type under every array level, cached in the type
+		 */
+		return t.getElementType();
+	}
+
+	public static Type arrayBase(Type t)
+	{
+		return ((Type.ArrayType) t).getBaseType();
+	}
+
+	public int getArrayArity(Type t)
+	{
+		/**
+		 * The number of array levels, cached in the type
+		 */
+		return t.getArity();
+	}
+
+	// ---------- Type Check methods ----------------/
+	// Check the type/semantics conform to EBNF //
+	public int selectorCheck(Node lhs, Node rhs, Symbol id, Token ident, int arity) throws ParserException
+	{
+		if(arrayInstance(lhs.getType()) && !intInstance(rhs.getType()))
+		{
+			parser.printError(Parser.ErrorType.MISMATCH_ERROR, ident, Parser.ERR_MISMATCH_INVALID_REF + "base = "
+					+ arrayBase(lhs.getType()) + ", index = " + rhs.getType());
+		}
+		else if(!arrayInstance(lhs.getType()))
+		{
+			parser.printError(Parser.ErrorType.MISMATCH_ERROR, ident,
+					Parser.ERR_MISMATCH_INVALID_REF + "base = " + lhs.getType() + ", index = " + rhs.getType());
+		}
+		else
+		{
+			arity++;
+		}
+		return arity;
+	}
+
+	public void assignementExprCheck(Node lhs, Token op, Node rhs) throws ParserException
+	{
+		checkForArrayError(1, lhs, rhs, op);
+		if((lhs.getType() != rhs.getType()))
+		{
+			if(stringInstance(lhs.getType()))
+			{
+				// this is the deep string search , so if a string is in there
+				// somewhere then we can find it
+				if(!stringPresent)
+				{
+					parser.printError(Parser.ErrorType.MISMATCH_ERROR, op, Parser.ERR_MISMATCH_INVALID_ASSIGN + lhs.getType()
+							+ " <- " + rhs.getType());
+				}
+			}
+			else
+			{
+				parser.printError(Parser.ErrorType.MISMATCH_ERROR, op, Parser.ERR_MISMATCH_INVALID_ASSIGN + lhs.getType()
+						+ " <- " + rhs.getType());
+			}
+		}
+	}
+
+	public void assignementLiteralCheck(Node lhs, Token op) throws ParserException
+	{
+		if(!stringInstance(lhs.getType()))
+		{
+			parser.printError(Parser.ErrorType.MISMATCH_ERROR, op, Parser.ERR_MISMATCH_INVALID_ASSIGN + " " + lhs.getType()
+					+ " <- " + Type.newPrimitiveType("string"));
+		}
+	}
+
+	public void termCheck(Node lhs, Node rhs, Token op) throws ParserException
+	{
+		/**
+		 * int and char instances can be multiplied by each other , but not with
+		 * each other
+		 */
+		checkForArrayError(0, lhs, rhs, op);
+		if(!(intInstance(lhs.getType()) && intInstance(rhs.getType())))
+		{
+			parser.printError(Parser.ErrorType.MISMATCH_ERROR, op, Parser.ERR_MISMATCH_INVALID_OP + op.getLexeme() + ", "
+					+ lhs.getType() + ", " + rhs.getType());
+		}
+	}
+
+	public void expressionCheck(Node lhs, Node rhs, Token op) throws ParserException
+	{
+		/**
+		 * So anything can be added with a string, apart from that make sure the
+		 * types are the same
+		 */
+		checkForArrayError(0, lhs, rhs, op);
+		if(stringInstance(lhs.getType()) || stringInstance(rhs.getType()))
+		{
+			stringPresent = true;// set the deep string flag , so if a
+			// string is somewhere in a long expression , the whole expression
+			// becomes a string
+			return;
+		}
+		else if(lhs.getType() != rhs.getType())
+		{
+			parser.printError(Parser.ErrorType.MISMATCH_ERROR, op, Parser.ERR_MISMATCH_INVALID_OP + op.getLexeme() + ", "
+					+ lhs.getType() + ", " + rhs.getType());
+		}
+	}
+
+	public void conditionCheck(Node lhs, Token op, Node rhs) throws ParserException
+	{
+		/**
+		 * Check whether we are comparing an array first (error) then simply
+		 * check if the 2 sides are of the same type
+		 */
+		checkForArrayError(0, lhs, rhs, op);
+		if(stringPresent)
+		{
+			if(!stringInstance(lhs.getType()))
+			{
+				parser.printError(Parser.ErrorType.MISMATCH_ERROR, op, Parser.ERR_MISMATCH_INVALID_OP + op.getLexeme() + ", "
+						+ lhs.getType() + ", " + Type.newPrimitiveType("string"));
+			}
+		}
+		else if(lhs.getType() != rhs.getType())
+		{
+			parser.printError(Parser.ErrorType.MISMATCH_ERROR, op, Parser.ERR_MISMATCH_INVALID_OP + op.getLexeme() + ", "
+					+ lhs.getType() + ", " + rhs.getType());
+		}
+	}
+
+	public void ioCheck(Token sym, List<Symbol> params) throws ParserException
+	{
+		for (Symbol c : params)
+		{
+			if(arrayInstance(c.getType()))
+			{
+				parser.printError(Parser.ErrorType.MISMATCH_ERROR, sym, Parser.ERR_MISMATCH_INVALID_ARG + c.getName()
+						+ ", " + c.getType());
+			}
+		}
+	}
+
+	public void funcCheck(Symbol proc, ArrayList<Symbol> args, List<Symbol> params, Token sym) throws ParserException
+	{
+		/**
+		 * Slightly more awkward than IO check The order of the lists here
+		 * matter so firstly go through the arguements and put them into another
+		 * list during the input check that they are the same order as the real
+		 * inputs and activate a flag isCorrect as false if there's a Mismatch
+		 * error
+		 *
+		 * else if the 2 lists are of different lengths then show an Arity error
+		 */
+		ListIterator<Symbol> iter = args.listIterator();
+		ArrayList<Symbol> givenArgs = new ArrayList<Symbol>();
+		Symbol correctSymbol = iter.next();
+		boolean isCorrect = true;
+		for (Symbol givenArg : params)
+		{
+			if(arrayInstance(givenArg.getType()))
+			{
+				parser.printError(Parser.ErrorType.MISMATCH_ERROR, sym,
+						Parser.ERR_MISMATCH_INVALID_ARG + givenArg.getName() + ", " + givenArg.getType());
+			}
+			else
+			{
+				givenArgs.add(givenArg);
+				if(iter.hasNext())
+				{
+					correctSymbol = iter.next();
+				}
+				if(givenArg.getType() != correctSymbol.getType())
+				{
+					isCorrect = false;
+				}
+			}
+		}
+		if(!isCorrect || (args.size() != givenArgs.size()))
+		{
+			String pattern = proc.getName() + "(";
+			String pattern2 = "(";
+			Iterator<Symbol> i1 = args.iterator();
+			Iterator<Symbol> i2 = givenArgs.iterator();
+			while (i1.hasNext())
+			{
+				pattern += i1.next().getType();
+				if(i1.hasNext())
+				{
+					pattern += ", ";
+				}
+			}
+			while (i2.hasNext())
+			{
+				pattern2 += i2.next().getType();
+				if(i2.hasNext())
+				{
+					pattern2 += ", ";
+				}
+			}
+			pattern += ")";
+			pattern2 += ")";
+			if(args.size() != givenArgs.size())
+			{
+				parser.printError(Parser.ErrorType.ARITY_ERROR, sym, Parser.ERR_MISMATCH_INVALID_CALL + pattern
+						+ " with " + pattern2);
+			}
+			else
+			{
+				parser.printError(Parser.ErrorType.MISMATCH_ERROR, sym, Parser.ERR_MISMATCH_INVALID_CALL + pattern
+						+ " with " + pattern2);
+			}
+		}
+	}
+
+	public void returnCheck(Symbol func, Node expr, Token sym) throws ParserException
+	{
+		/**
+		 * if func is null then its the main function that is being compared to
+		 * (i.e the void type)
+		 */
+		if(func == null)
+		{
+			if(expr.getType() != Type.newPrimitiveType("void"))
+			{
+				parser.printError(Parser.ErrorType.MISMATCH_ERROR, sym, Parser.ERR_MISMATCH_INVALID_RET + "expected = "
+						+ Type.newPrimitiveType("void") + ", received = " + expr.getType());
+			}
+		}
+		else if(func.getType() != expr.getType())
+		{
+			parser.printError(Parser.ErrorType.MISMATCH_ERROR, sym, Parser.ERR_MISMATCH_INVALID_RET + "expected = "
+					+ func.getType() + ", received = " + expr.getType());
+		}
+	}
+
+	public void checkForArrayError(int Check, Node lhs, Node rhs, Token op) throws ParserException
+	{
+		/**
+		 * Check for any instances of an array type here
+		 */
+		if(Check == 0)
+		{
+			String MM = Parser.ERR_MISMATCH_INVALID_OP + op.getLexeme() + ", " + lhs.getType() + ", " + rhs.getType();
+			if(arrayInstance(lhs.getType()))
+			{
+				if(arrayInstance(rhs.getType()))
+				{
+					parser.printError(Parser.ErrorType.MISMATCH_ERROR, op, MM);
+				}
+				else
+				{
+					parser.printError(Parser.ErrorType.MISMATCH_ERROR, op, MM);
+				}
+			}
+			else if(arrayInstance(rhs.getType()))
+			{
+				parser.printError(Parser.ErrorType.MISMATCH_ERROR, op, MM);
+			}
+		}
+		else if(Check == 1)
+		{
+			if(arrayInstance(lhs.getType()))
+			{
+				if(arrayInstance(rhs.getType()))
+				{
+					parser.printError(
+							Parser.ErrorType.MISMATCH_ERROR,
+							op,
+							Parser.ERR_MISMATCH_INVALID_ASSIGN + arrayBase(lhs.getType()) + " <- "
+									+ arrayBase(rhs.getType()));
+				}
+				else
+				{
+					parser.printError(
+							Parser.ErrorType.MISMATCH_ERROR,
+							op,
+							Parser.ERR_MISMATCH_INVALID_ASSIGN + arrayBase(lhs.getType()) + " <- "
+									+ rhs.getType());
+				}
+			}
+			else if(arrayInstance(rhs.getType()))
+			{
+				parser.printError(Parser.ErrorType.MISMATCH_ERROR, op, Parser.ERR_MISMATCH_INVALID_ASSIGN + lhs.getType()
+						+ " <- " + arrayBase(rhs.getType()));
+			}
+		}
+	}
+}
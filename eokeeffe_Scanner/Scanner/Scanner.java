@@ -2,1057 +2,268 @@ package src;
 
 import java.io.FileReader;
 import java.io.IOException;
-import java.io.PushbackReader;
+import java.io.Reader;
+import java.util.Arrays;
 
 /**
  * The lexical analyzer component of the compiler. This is responsible for
  * converting a given source file into a list of tokens.
+ *
+ * Tokens are recognised by a table driven DFA that is built once from the
+ * default lexemes in Token. Every character is mapped to a character class
+ * and the next state is a single lookup in the transition table, so each
+ * character is read exactly once and nothing is ever pushed back.
  */
 public class Scanner
 {
 
-	private PushbackReader in;
-	private StringBuilder lexeme;
-	private String lex;
-	private Token tokenName;
-	private int lineNum; // Not really necessary for this lab, but will be
-							// helpful when
-	private int charPos; // debugging later labs.
-
-	private int nextLineNum;
-	private int nextCharPos;
-	private int nextChar; // contains the next character (-1 == EOF)
-	private int EOF = -1;
-
-	public Scanner(String sourceFilename) throws IOException
-	{
-
-		in = new PushbackReader(new FileReader(sourceFilename));
-		// lexeme = new StringBuilder();
-
-		// initialize nextChar, nextLineNum, nextCharPos and possibly other
-		// fields
-
-		lineNum = 0;
-		charPos = 0;
-		nextChar = 0;
-		nextLineNum = 1;
-		nextCharPos = 1;
-	}
-
-	private void readchar()
-	{
-
-		/**
-		 * Read in a character from the current input stream and if EOF then
-		 * print the EOF token in the file
-		 */
-		try
-		{
-			nextChar = in.read();
-		}
-		catch (IOException ioe)
-		{
-			System.err.println("Exception while reading in character");
-			System.exit(1);
-		}
-		switch (nextChar)
-		{
-			case -1:
-			{
-				nextChar = EOF;
-				++charPos;
-				// lexeme.append((char) nextChar);
-				// lex += (char) nextChar;
-				break;
-			}
-			case 65535:
-			{
-				// this is an error case , as the pushback reader
-				// has difficulty dealing with files that don't have an
-				// EOF in the file it will return 65535 which is
-				// an overflow that results in -1 for reading
-				System.err.println("File Doesn't contain an EOF");
-				nextChar = EOF;
-				break;
-			}
-			case '\n':
-			{
-				++lineNum;
-				++nextLineNum;
-				charPos = 0;
-				break;
-			}
-			case '\t':
-			case '\r':
-			{
-				break;
-			}
-			default:
-			{
-				++charPos;
-				++nextCharPos;
-				// lexeme.append((char) nextChar);
-				lex += (char) nextChar;
-			}
-		}
-	}
-
-	private void unreadchar()
+	// ---------- DFA tables ----------
+	private static final int DEAD = -1;
+
+	/* fixed states, the keyword/symbol trie states follow them */
+	private static final int START = 0;
+	private static final int IN_IDENT = 1;
+	private static final int IN_NUMBER = 2;
+	private static final int IN_STRING = 3;
+	private static final int END_STRING = 4;
+	private static final int BAD_CHAR = 5;
+	private static final int NUM_FIXED_STATES = 6;
+
+	/* fixed character classes, every char used in a keyword or symbol gets
+	 * a class of its own after these */
+	private static final int CLASS_OTHER = 0;
+	private static final int CLASS_LETTER = 1;
+	private static final int CLASS_DIGIT = 2;
+	private static final int CLASS_QUOTE = 3;
+	private static final int CLASS_EOF = 4;
+	private static final int NUM_FIXED_CLASSES = 5;
+
+	private static final int[] asciiClass = new int[128];
+	private static final int numClasses;
+	private static final int[] transitions; // [state * numClasses + class]
+	private static final Token[] accepting; // token recognised in each state
+
+	static
 	{
-
 		/**
-		 * Push back a character into the front of the buffered stream
+		 * Give every character that appears in a keyword or symbol its own
+		 * class, then insert the lexemes into a trie whose nodes become the
+		 * DFA states. Keyword prefixes fall back to identifiers and symbol
+		 * prefixes that are not tokens themselves (i.e. "!") are errors.
 		 */
-		switch (nextChar)
-		{
-			case '\n':
-			{
-				--lineNum;
-				--nextLineNum;
-				break;
-			}
-			default:
-			{
-				--charPos;
-				--nextCharPos;
-			}
-		}
-
-		lex = (String) lex.subSequence(0, lex.length() - 1);
-
-		// System.out.println(lexeme+"::Last character at:"+lexeme.length());
-		try
-		{
-			in.unread(nextChar);
-		}
-		catch (IOException ioe)
+		boolean[] isWordClass = new boolean[128 + NUM_FIXED_CLASSES];
+		for (int c = 0; c < 128; c++)
 		{
-			System.err.println("Exception while reading in character");
-			System.exit(1);
+			if (Character.isLetter(c)) asciiClass[c] = CLASS_LETTER;
+			else if (Character.isDigit(c)) asciiClass[c] = CLASS_DIGIT;
+			else if (c == '"') asciiClass[c] = CLASS_QUOTE;
+			else asciiClass[c] = CLASS_OTHER;
 		}
-	}
-
-	/**
-	 * Returns the next token in the source file.
-	 * 
-	 * Also updates the current lexeme, line number, and character position so
-	 * subsequent access to those fields yield corresponding values for the
-	 * returned token.
-	 */
-	@SuppressWarnings("unused")
-	public Token next() throws IOException
-	{
-		/**
-		 * After the first character of the current token has been read ,
-		 * go through the keyword statements before going to ident if the first character
-		 * is a letter . If a number then process until something not a number comes up
-		 */
-		lex = "";
-		readchar();
+		isWordClass[CLASS_LETTER] = isWordClass[CLASS_DIGIT] = true;
 
-		// label the main loop to read in the tokens
-		StateMachine: while (nextChar != EOF)
+		int classes = NUM_FIXED_CLASSES;
+		for (Token token : Token.values())
 		{
-			switch ((char) nextChar)
+			if (!hasFixedLexeme(token)) continue;
+			for (char c : token.defaultLexeme.toCharArray())
 			{
-				case ' ':
-				case '\t':
-				case '\r':
-				case '\n':
-				{
-					// eat the whitespace,tab,newline characters
-					readchar();
-					continue;
-				}
-				case 'a':{return process_a();}
-				case 'c':{return process_c();}
-				case 'e':{return process_e();}
-				case 'i':{return process_i();}
-				case 'm':{return process_m();}
-				case 'o':{return process_o();}
-				case 'p':{return process_p();}
-				case 'r':{return process_r();}
-				case 's':{return process_s();}
-				case 'v':{return process_v();}
-				case 'w':{return process_w();}
-				case '!':
-				{
-					readchar();
-					if (nextChar == '=')
-					{
-						writeToLexeme();
-						return Token.NEQ;
-					}
-					else
-					{
-						writeToLexeme();
-						return Token.ERROR;
-					}
-				}
-				case '+':{writeToLexeme();return Token.ADD;}
-				case '-':{writeToLexeme(); return Token.SUB;}
-				case '*':{writeToLexeme();return Token.MULT;}
-				case '/':{writeToLexeme();return Token.DIV;}
-				case '=':
-				{
-					readchar();
-					if (nextChar != '=')
-					{
-						unreadchar();
-						writeToLexeme();
-						return Token.ASSIGN;
-					}
-					else
-					{
-						writeToLexeme();
-						return Token.EQUAL;
-					}
-				}
-				case '<':
+				if (asciiClass[c] < NUM_FIXED_CLASSES)
 				{
-					readchar();
-					if (nextChar == '=')
-					{
-						writeToLexeme();
-						return Token.LESSER_EQUAL;
-					}
-					else if (Character.isWhitespace(nextChar))
-					{
-						writeToLexeme();
-						return Token.LESS_THAN;
-					}
-					else if (!Character.isLetterOrDigit(nextChar))
-					{
-						unreadchar();
-						return Token.LESS_THAN;
-					}
-					else
-					{
-						unreadchar();
-						writeToLexeme();
-						return Token.LESS_THAN;
-					}
-
-				}
-				case '>':
-				{
-					readchar();
-					if (nextChar == '=')
-					{
-						writeToLexeme();
-						return Token.GREATER_EQUAL;
-					}
-					else if (Character.isWhitespace(nextChar))
-					{
-						writeToLexeme();
-						return Token.GREATER_THAN;
-					}
-					else if (!Character.isLetterOrDigit(nextChar))
-					{
-						unreadchar();
-						return Token.GREATER_THAN;
-					}
-					else
-					{
-						unreadchar();
-						writeToLexeme();
-						return Token.GREATER_THAN;
-					}
-				}
-				case '{':
-				{writeToLexeme();return Token.L_BRACE;}
-				case '}':{writeToLexeme();return Token.R_BRACE;}
-				case '(':{writeToLexeme();return Token.L_PAREN;}
-				case ')':{writeToLexeme();return Token.R_PAREN;}
-				case '[':{writeToLexeme();return Token.L_BRACKET;}
-				case ']':{writeToLexeme();return Token.R_BRACKET;}
-				case '"':{writeToLexeme();return Token.STRING_LITERAL;}
-				case ':':{writeToLexeme();return Token.COLON;}
-				case ';':{writeToLexeme();return Token.SEMICOLON;}
-				case '.':{writeToLexeme();return Token.PERIOD;}
-				case ',':{writeToLexeme();return Token.COMMA;}
-				case '0':// deal with a number
-				case '1':
-				case '2':
-				case '3':
-				case '4':
-				case '5':
-				case '6':
-				case '7':
-				case '8':
-				case '9':
-				{
-					return process_number();
-				}
-				default:
-				{
-					return ident();
+					isWordClass[classes] = Character.isLetterOrDigit(c);
+					asciiClass[c] = classes++;
 				}
 			}
 		}
-		if (nextChar == EOF)
+		numClasses = classes;
+
+		int maxStates = NUM_FIXED_STATES;
+		for (Token token : Token.values())
 		{
-			writeToLexeme();
-			return Token.EOF;
+			maxStates += token.defaultLexeme.length();
 		}
+		int[] table = new int[maxStates * numClasses];
+		Token[] accept = new Token[maxStates];
+		Arrays.fill(table, DEAD);
 
-		return Token.ERROR;
-	}
-
-	public Token process_i()
-	{
-		/**
-		 * Possible keywords 
-		 * if
-		 * int
-		 * input
-		 */
-		readchar();
-		if (nextChar == 'n')
+		for (int cls = 0; cls < numClasses; cls++)
 		{
-			// input,int
-			// else treat as ident
-			readchar();
-			if (nextChar == 'p')
-			{
-				readchar();
-				if (nextChar == 'u')
-				{
-					readchar();
-					if (nextChar == 't')
-					{
-						readchar();
-						if (Character.isWhitespace(nextChar))
-						{
-							// definetly an input with a space
-							// before
-							writeToLexeme();
-							return Token.INPUT;
-						}
-						else if (nextChar == '(')
-						{
-							unreadchar();
-							// definetly an input
-							writeToLexeme();
-							return Token.INPUT;
-						}
-						else if (!Character.isLetterOrDigit(nextChar))
-						{
-							unreadchar();
-							writeToLexeme();
-							return Token.INPUT;
-						}
-						else
-						{
-							return ident();
-						}
-					}
-					else
-					{
-						return ident();
-					}
-				}
-				else
-				{
-					return ident();
-				}
-
-			}
-			else if (nextChar == 't')
-			{
-				readchar();
-				if (Character.isWhitespace(nextChar))
-				{
-					// definetly an int
-					writeToLexeme();
-					return Token.INT;
-				}
-				else if (!Character.isLetterOrDigit(nextChar))
-				{
-					// definetly an int
-					unreadchar();
-					writeToLexeme();
-					return Token.INT;
-				}
-				else
-				{
-					return ident();
-				}
-			}
-			else
-			{// not an input or int
-				return ident();
-			}
+			if (isWordClass[cls]) table[IN_IDENT * numClasses + cls] = IN_IDENT;
+			if (cls != CLASS_QUOTE && cls != CLASS_EOF)
+				table[IN_STRING * numClasses + cls] = IN_STRING;
+			if (cls != CLASS_EOF)
+				table[START * numClasses + cls] = isWordClass[cls] ? IN_IDENT : BAD_CHAR;
 		}
-		else if (nextChar == 'f')
-		{// if statement
-			readchar();
-			if (Character.isWhitespace(nextChar))
-			{
-				writeToLexeme();
-				return Token.IF;
-			}
-			else if (nextChar == '(')
-			{
-				unreadchar();
-				writeToLexeme();
-				return Token.IF;
-			}
-			else if (!Character.isLetterOrDigit(nextChar))
-			{
-				unreadchar();
-				writeToLexeme();
-				return Token.IF;
-			}
-			else
-			{
-				return ident();
-			}
-		}
-		else
-		{// begins with i no , more matches
-			return ident();
-		}
-	}
+		table[START * numClasses + CLASS_LETTER] = IN_IDENT;
+		table[START * numClasses + CLASS_DIGIT] = IN_NUMBER;
+		table[START * numClasses + CLASS_QUOTE] = IN_STRING;
+		table[IN_NUMBER * numClasses + CLASS_DIGIT] = IN_NUMBER;
+		table[IN_STRING * numClasses + CLASS_QUOTE] = END_STRING;
+		accept[IN_IDENT] = Token.IDENT;
+		accept[IN_NUMBER] = Token.NUMBER;
+		accept[IN_STRING] = Token.ERROR; // unterminated string
+		accept[END_STRING] = Token.STRING_LITERAL;
+		accept[BAD_CHAR] = Token.ERROR;
 
-	public Token process_p()
-	{
-		/**
-		 * Possible keywords
-		 * print
-		 */
-		readchar();
-		if (nextChar == 'r')
+		int states = NUM_FIXED_STATES;
+		for (Token token : Token.values())
 		{
-			readchar();
-			if (nextChar == 'i')
+			if (!hasFixedLexeme(token)) continue;
+			String lexeme = token.defaultLexeme;
+			boolean isKeyword = Character.isLetter(lexeme.charAt(0));
+			int state = START;
+			for (int i = 0; i < lexeme.length(); i++)
 			{
-				readchar();
-				if (nextChar == 'n')
+				int index = state * numClasses + asciiClass[lexeme.charAt(i)];
+				if (table[index] == DEAD || table[index] < NUM_FIXED_STATES)
 				{
-					readchar();
-					if (nextChar == 't')
+					int node = states++;
+					if (isKeyword)
 					{
-						readchar();
-						if (Character.isWhitespace(nextChar))
-						{// print statement
-							writeToLexeme();
-							return Token.PRINT;
-						}
-						else if (nextChar == '(')
-						{// print statement
-							unreadchar();
-							writeToLexeme();
-							return Token.PRINT;
-						}
-						else if (!Character.isLetterOrDigit(nextChar))
+						// anything that leaves the trie is still an identifier
+						for (int cls = 0; cls < numClasses; cls++)
 						{
-							unreadchar();
-							writeToLexeme();
-							return Token.PRINT;
-						}
-						else
-						{// not a print statement
-							return ident();
+							if (isWordClass[cls]) table[node * numClasses + cls] = IN_IDENT;
 						}
+						accept[node] = Token.IDENT;
 					}
 					else
 					{
-						return ident();
+						accept[node] = Token.ERROR;
 					}
+					table[index] = node;
 				}
-				else
-				{
-					return ident();
-				}
+				state = table[index];
 			}
-			else
-			{
-				return ident();
-			}
-		}
-		else
-		{
-			return ident();
+			accept[state] = token;
 		}
+		transitions = Arrays.copyOf(table, states * numClasses);
+		accepting = Arrays.copyOf(accept, states);
 	}
 
-	public Token process_e()
+	private static boolean hasFixedLexeme(Token token)
 	{
-		/**
-		 * Possible keywords
-		 * else
-		 */
-		readchar();
-		if (nextChar == 'l')
-		{
-			readchar();
-			if (nextChar == 's')
-			{
-				readchar();
-				if (nextChar == 'e')
-				{
-					readchar();
-					if (Character.isWhitespace(nextChar))
-					{
-						writeToLexeme();
-						return Token.ELSE;
-					}
-					else if (nextChar == '(')
-					{
-						unreadchar();
-						writeToLexeme();
-						return Token.ELSE;
-					}
-					else if (!Character.isLetterOrDigit(nextChar))
-					{
-						unreadchar();
-						writeToLexeme();
-						return Token.ELSE;
-					}
-					else
-					{
-						return ident();
-					}
-				}
-				else
-				{
-					return ident();
-				}
-			}
-			else
-			{
-				return ident();
-			}
-		}
-		else
-		{
-			return ident();
-		}
+		return token.defaultLexeme.length() > 0 && token != Token.EOF && token != Token.ERROR;
 	}
 
-	public Token process_w()
-	{
-		/**
-		 * Possible keywords
-		 * while
-		 */
-		readchar();
-		if (nextChar == 'h')
-		{
-			readchar();
-			if (nextChar == 'i')
-			{
-				readchar();
-				if (nextChar == 'l')
-				{
-					readchar();
-					if (nextChar == 'e')
-					{
-						readchar();
-						if (Character.isWhitespace(nextChar))
-						{// more than likely a while statement
-							writeToLexeme();
-							return Token.WHILE;
-						}
-						else if (nextChar == '(')
-						{// definetly a while statement
-							unreadchar();
-							writeToLexeme();
-							return Token.WHILE;
-						}
-						else if (!Character.isLetterOrDigit(nextChar))
-						{
-							unreadchar();
-							writeToLexeme();
-							return Token.WHILE;
-						}
-						else
-						{
-							return ident();
-						}
-					}
-					else
-					{
-						return ident();
-					}
-				}
-				else
-				{
-					return ident();
-				}
-			}
-			else
-			{
-				return ident();
-			}
-		}
-		else
-		{
-			return ident();
-		}
-	}
+	// ---------- Scanner state ----------
+	private char[] source;
+	private int sourceLength;
+	private int pos; // offset of the next unread character
 
-	public Token process_c()
-	{
-		/**
-		 * Possible keywords
-		 * char
-		 * const
-		 */
-		readchar();
-		if (nextChar == 'h')
-		{
-			readchar();
-			if (nextChar == 'a')
-			{
-				readchar();
-				if (nextChar == 'r')
-				{
-					readchar();
-					if (Character.isWhitespace(nextChar)
-							|| !Character.isLetterOrDigit(nextChar))
-					{
-						writeToLexeme();
-						return Token.CHAR;
-					}
-					else
-					{
-						return ident();
-					}
-				}
-				else
-				{
-					return ident();
-				}
-			}
-			else
-			{
-				return ident();
-			}
-		}
-		else if (nextChar == 'o')
-		{
-			readchar();
-			if (nextChar == 'n')
-			{
-				readchar();
-				if (nextChar == 's')
-				{
-					readchar();
-					if (nextChar == 't')
-					{
-						readchar();
-						if (Character.isWhitespace(nextChar)
-								|| !Character.isLetterOrDigit(nextChar))
-						{
-							writeToLexeme();
-							return Token.CONST;
-						}
-						else
-						{
-							return ident();
-						}
-					}
-					else
-					{
-						return ident();
-					}
-				}
-				else
-				{
-					return ident();
-				}
-			}
-			else
-			{
-				return ident();
-			}
-		}
-		else
-		{
-			return ident();
-		}
-	}
+	private int lexemeStart;
+	private int lexemeEnd;
+	private Token tokenName;
+	private int lineNum;
+	private int charPos;
+
+	private int nextLineNum;
+	private int nextCharPos;
 
-	public Token process_r()
+	public Scanner(String sourceFilename) throws IOException
 	{
-		/**
-		 * Possible keywords
-		 * return
-		 */
-		readchar();
-		if (nextChar == 'e')
+
+		Reader in = new FileReader(sourceFilename);
+		try
 		{
-			readchar();
-			if (nextChar == 't')
+			source = new char[8192];
+			int n;
+			while ((n = in.read(source, sourceLength, source.length - sourceLength)) >= 0)
 			{
-				readchar();
-				if (nextChar == 'u')
+				sourceLength += n;
+				if (sourceLength == source.length)
 				{
-					readchar();
-					if (nextChar == 'r')
-					{
-						readchar();
-						if (nextChar == 'n')
-						{
-							readchar();
-							if (Character.isWhitespace(nextChar)
-									|| !Character.isLetterOrDigit(nextChar))
-							{
-								writeToLexeme();
-								return Token.RETURN;
-							}
-							else
-							{
-								return ident();
-							}
-						}
-						else
-						{
-							return ident();
-						}
-					}
-					else
-					{
-						return ident();
-					}
-				}
-				else
-				{
-					return ident();
+					source = Arrays.copyOf(source, source.length * 2);
 				}
 			}
-			else
-			{
-				return ident();
-			}
 		}
-		else
+		finally
 		{
-			return ident();
+			in.close();
 		}
+
+		pos = 0;
+		nextLineNum = 1;
+		nextCharPos = 1;
 	}
 
-	public Token process_s()
+	private void advance(char c)
 	{
-		/**
-		 * Possible keywords
-		 * string
-		 */
-		readchar();
-		if (nextChar == 't')
+		pos++;
+		if (c == '\n')
 		{
-			readchar();
-			if (nextChar == 'r')
-			{
-				readchar();
-				if (nextChar == 'i')
-				{
-					readchar();
-					if (nextChar == 'n')
-					{
-						readchar();
-						if (nextChar == 'g')
-						{
-							readchar();
-							if (Character.isWhitespace(nextChar)
-									|| !Character.isLetterOrDigit(nextChar))
-							{
-								writeToLexeme();
-								return Token.STRING;
-							}
-							else
-							{
-								return ident();
-							}
-						}
-						else
-						{
-							return ident();
-						}
-					}
-					else
-					{
-						return ident();
-					}
-				}
-				else
-				{
-					return ident();
-				}
-			}
-			else
-			{
-				return ident();
-			}
+			nextLineNum++;
+			nextCharPos = 1;
 		}
 		else
 		{
-			return ident();
+			nextCharPos++;
 		}
 	}
 
-	public Token process_v()
+	private static int classOf(char c)
 	{
-		/**
-		 * Possible keywords
-		 * var
-		 * void
-		 */
-		readchar();
-		if (nextChar == 'o')
-		{
-			readchar();
-			if (nextChar == 'i')
-			{
-				readchar();
-				if (nextChar == 'd')
-				{
-					readchar();
-					if (Character.isWhitespace(nextChar)
-							|| !Character.isLetterOrDigit(nextChar))
-					{
-						writeToLexeme();
-						return Token.VOID;
-					}
-					else
-					{
-						return ident();
-					}
-				}
-				else
-				{
-					return ident();
-				}
-			}
-			else
-			{
-				return ident();
-			}
-		}
-		else if (nextChar == 'a')
-		{
-			readchar();
-			if (nextChar == 'r')
-			{
-				readchar();
-				if (Character.isWhitespace(nextChar)
-						|| !Character.isLetterOrDigit(nextChar))
-				{
-					writeToLexeme();
-					return Token.VAR;
-				}
-				else
-				{
-					return ident();
-				}
-			}
-			else
-			{
-				return ident();
-			}
-		}
-		else
-		{
-			return ident();
-		}
+		if (c < 128) return asciiClass[c];
+		if (Character.isLetter(c)) return CLASS_LETTER;
+		if (Character.isDigit(c)) return CLASS_DIGIT;
+		return CLASS_OTHER;
 	}
 
-	public Token process_a()
+	/**
+	 * Returns the next token in the source file.
+	 *
+	 * Also updates the current lexeme, line number, and character position so
+	 * subsequent access to those fields yield corresponding values for the
+	 * returned token.
+	 */
+	public Token next() throws IOException
 	{
-		/**
-		 * Possible keywords
-		 * array
-		 */
-		readchar();
-		if (nextChar == 'r')
+		// eat whitespace and '#' comments
+		while (pos < sourceLength)
 		{
-			readchar();
-			if (nextChar == 'r')
+			char c = source[pos];
+			if (c == '#')
 			{
-				readchar();
-				if (nextChar == 'a')
-				{
-					readchar();
-					if (nextChar == 'y')
-					{
-						readchar();
-						if (Character.isWhitespace(nextChar)
-								|| !Character.isLetterOrDigit(nextChar))
-						{
-							writeToLexeme();
-							return Token.ARRAY;
-						}
-						else if (nextChar == '[')
-						{
-							unreadchar();
-							writeToLexeme();
-							return Token.ARRAY;
-						}
-						else
-						{
-							return ident();
-						}
-					}
-					else
-					{
-						return ident();
-					}
-				}
-				else
-				{
-					return ident();
-				}
+				while (pos < sourceLength && source[pos] != '\n') advance(source[pos]);
 			}
-			else
+			else if (Character.isWhitespace(c))
 			{
-				return ident();
-			}
-		}
-		else
-		{
-			return ident();
-		}
-	}
-
-	public Token process_m()
-	{
-		/**
-		 * Possible keywords
-		 * main
-		 */
-		readchar();
-		if (nextChar == 'a')
-		{
-			readchar();
-			if (nextChar == 'i')
-			{
-				readchar();
-				if (nextChar == 'n')
-				{
-					readchar();
-					if (Character.isWhitespace(nextChar))
-					{
-						writeToLexeme();
-						return Token.MAIN;
-					}
-					else if (nextChar == '(')
-					{
-						unreadchar();
-						writeToLexeme();
-						return Token.MAIN;
-					}
-					else if (!Character.isLetterOrDigit(nextChar))
-					{
-						unreadchar();
-						writeToLexeme();
-						return Token.MAIN;
-					}
-					else
-					{
-						return ident();
-					}
-				}
-				else
-				{
-					return ident();
-				}
+				advance(c);
 			}
 			else
 			{
-				return ident();
+				break;
 			}
 		}
-		else
-		{
-			return ident();
-		}
-	}
 
-	public Token process_o()
-	{
-		/**
-		 * Possible keywords
-		 * of
-		 */
-		// of Type keyword
-		readchar();
-		if (nextChar == 'f')
+		lineNum = nextLineNum;
+		charPos = nextCharPos;
+		lexemeStart = lexemeEnd = pos;
+		if (pos >= sourceLength)
 		{
-			writeToLexeme();
-			return Token.OF;
+			tokenName = Token.EOF;
+			return tokenName;
 		}
-		else
-		{
-			return ident();
-		}
-	}
 
-	public Token ident()
-	{
-		/**
-		 * dealing with ident token
-		 * can be a letter{letter|digits}
-		 */
-		while (Character.isLetterOrDigit(nextChar) && (nextChar != EOF))
+		// run the DFA until there is no transition for the next character
+		int state = START;
+		while (true)
 		{
-			readchar();
+			int cls = pos < sourceLength ? classOf(source[pos]) : CLASS_EOF;
+			int nextState = transitions[state * numClasses + cls];
+			if (nextState == DEAD) break;
+			advance(source[pos]);
+			state = nextState;
 		}
-		if ((!Character.isLetterOrDigit(lex.charAt(lex.length() - 1))))
-		{
-			unreadchar();
-		}
-		// System.out.println(lex+"::Last character at:"+lex.length());
-		writeToLexeme();
-		return Token.IDENT;
-	}
 
-	public Token process_number()
-	{
-		/**
-		 * Process a number which can be
-		 * digit{digit}
-		 */
-		while (Character.isDigit(nextChar))
-		{
-			readchar();
-		}
-		// check to make sure that the last character is a digit
-		if (Character.isDigit(lex.charAt(lex.length() - 1)))
-		{
-			writeToLexeme();
-			// System.out.println("No Pushback:"+lex);
-			return Token.NUMBER;
-		}
-		else
+		tokenName = accepting[state];
+		lexemeEnd = pos;
+		if (state == END_STRING || state == IN_STRING)
 		{
-			unreadchar();// unread the last character back to the
-							// front of the buffer
-			writeToLexeme();
-			// System.out.println("Pushback:"+lex);
-			return Token.NUMBER;
+			// strip the quotes from the string literal
+			lexemeStart++;
+			if (state == END_STRING) lexemeEnd--;
 		}
-	}
-	
-	public void writeToLexeme()
-	{
-		/**
-		 * Problem with the stringbuilder in my version
-		 * safer to use this to prevent over strenous use
-		 * of arraycopy which is memory heavy function
-		 */
-		String temp = "";
-		for (int i = 0; i < lex.length(); i++)
-		{
-			if (!Character.isWhitespace(lex.charAt(i)))
-			{
-				// System.out.println(lex.charAt(i));
-				temp += lex.charAt(i);
-			}
-		}
-		lexeme = new StringBuilder(temp);
+		return tokenName;
 	}
 
 	@Override
@@ -1073,7 +284,7 @@ public class Scanner
 	public String getLexeme()
 	{
 
-		return lexeme.toString();
+		return new String(source, lexemeStart, lexemeEnd - lexemeStart);
 	}
 
 	public int getLineNum()
@@ -17,22 +17,22 @@ public class Parser
 	public static final String ERR_MISMATCH_INVALID_OP = "Invalid operator usage: ";
 	public static final String ERR_MISMATCH_INVALID_REF = "Invalid array reference: ";
 	public static final String ERR_MISMATCH_INVALID_CALL = "Invalid call: ";
-	protected static Scanner scanner;
-	private static SymbolTable symbolTable;
+	protected Scanner scanner;
+	private SymbolTable symbolTable;
 	private StringBuilder parseTreeBuffer;
 	private int recursionDepth;
-	private static List<String> errors;
-	private static boolean doSemanticChecks;
+	private List<String> errors;
+	private boolean doSemanticChecks;
 	// get the token for the current procedure
-	protected static Token sym;
+	protected Token sym;
 	// for doing deep expr checking with strings,final check on main for return
 	// type
-	protected static boolean stringPresent = false, io = false, mainReturn = false;
-	private TypeChecker checker = new TypeChecker();
+	protected boolean stringPresent, io, mainReturn;
+	private TypeChecker checker = new TypeChecker(this);
 
 	public Parser(boolean doSemanticChecks)
 	{
-		Parser.doSemanticChecks = doSemanticChecks;
+		this.doSemanticChecks = doSemanticChecks;
 	}
 
 	public Parser()
@@ -46,6 +46,7 @@ public class Parser
 		parseTreeBuffer = new StringBuilder();
 		recursionDepth = 1; // to match test cases, should really be 0
 		errors = new ArrayList<String>();
+		stringPresent = io = mainReturn = false;
 		scanner = new Scanner(sourceFilename);
 		scanner.next();
 		initSymbolTable();
@@ -79,7 +80,7 @@ public class Parser
 	}
 
 	// ---------- Methods for error reporting ----------
-	private static void addTestCaseErrorMessage()
+	private void addTestCaseErrorMessage()
 	{
 		// For comparing output: please use this format as it will be used to
 		// compare output results.
@@ -105,7 +106,7 @@ public class Parser
 		}
 	}
 
-	protected static void printError(TokenKind expectedToken) throws ParserException
+	protected void printError(TokenKind expectedToken) throws ParserException
 	{
 		// We are terminating the parse here, but better compilers will do error
 		// recovery and keep going to find more syntax errors.
@@ -123,12 +124,12 @@ public class Parser
 		throw new ParserException(scanner.getLineNum(), scanner.getCharPos(), errorMessage);
 	}
 
-	protected static void printError(ErrorType error, Token tokenName) throws ParserException
+	protected void printError(ErrorType error, Token tokenName) throws ParserException
 	{
 		printError(error, tokenName, null);
 	}
 
-	protected static void printError(ErrorType errorType, Token nameToken, String message) throws ParserException
+	protected void printError(ErrorType errorType, Token nameToken, String message) throws ParserException
 	{
 		String errorMessage = "SEMANTIC ERROR: " + errorType + " on symbol " + nameToken.getLexeme();
 		StringBuilder outputError = new StringBuilder();
@@ -168,7 +169,7 @@ public class Parser
 		}
 	}
 
-	protected static Symbol tryResolveSymbol(Token nameToken, Symbol.Kind kind) throws ParserException
+	protected Symbol tryResolveSymbol(Token nameToken, Symbol.Kind kind) throws ParserException
 	{
 		Symbol temp = symbolTable.getSymbol(nameToken.getLexeme(), kind);
 		if(temp != null)
@@ -212,7 +213,7 @@ public class Parser
 	}
 
 	// ---------- Helper methods ----------
-	private static boolean have(TokenKind tokenKind)
+	private boolean have(TokenKind tokenKind)
 	{
 		return scanner.getTokenKind() == tokenKind;
 	}
@@ -222,7 +223,7 @@ public class Parser
 		return nt.firstSet.contains(scanner.getTokenKind());
 	}
 
-	protected static boolean accept(TokenKind tokenKind)
+	protected boolean accept(TokenKind tokenKind)
 	{
 		if(have(tokenKind))
 		{
@@ -242,7 +243,7 @@ public class Parser
 		return false;
 	}
 
-	protected static boolean expect(TokenKind tokenKind) throws ParserException
+	protected boolean expect(TokenKind tokenKind) throws ParserException
 	{
 		if(accept(tokenKind)) return true;
 		printError(tokenKind);
@@ -256,7 +257,7 @@ public class Parser
 		return false;
 	}
 
-	protected static Token expectRetrieve(TokenKind tokenKind) throws ParserException
+	protected Token expectRetrieve(TokenKind tokenKind) throws ParserException
 	{
 		Token res = scanner.getToken();
 		expect(tokenKind);
@@ -326,7 +327,7 @@ public class Parser
 		expect(NonTerminal.RELOP);
 		Node rhs = expression();
 		// type check the inputs
-		TypeChecker.conditionCheck(lhs, op, rhs);
+		checker.conditionCheck(lhs, op, rhs);
 		expect(TokenKind.R_PAREN);
 		exitRule(NonTerminal.CONDITION);
 		stringPresent = false;
@@ -364,11 +365,11 @@ public class Parser
 		if(have(NonTerminal.EXPRESSION))
 		{
 			rhs = expression();
-			TypeChecker.assignementExprCheck(lhs, op, rhs);
+			checker.assignementExprCheck(lhs, op, rhs);
 		}
 		else
 		{
-			TypeChecker.assignementLiteralCheck(lhs, op);
+			checker.assignementLiteralCheck(lhs, op);
 			expect(TokenKind.STRING_LITERAL);
 		}
 		expect(TokenKind.SEMICOLON);
@@ -443,7 +444,7 @@ public class Parser
 		sym = expectRetrieve(TokenKind.RETURN);
 		Node expr = expression();
 		// do the type check on func symbol type and expr type
-		TypeChecker.returnCheck(func, expr);
+		checker.returnCheck(func, expr);
 		expect(TokenKind.SEMICOLON);
 		exitRule(NonTerminal.RETURN_STATEMENT);
 		stringPresent = false;
@@ -552,7 +553,7 @@ public class Parser
 		while (accept(NonTerminal.OP1))
 		{
 			Node rhs = factor();
-			TypeChecker.termCheck(lhs, rhs, op);
+			checker.termCheck(lhs, rhs, op);
 			op = scanner.getToken();
 		}
 		exitRule(NonTerminal.TERM);
@@ -570,7 +571,7 @@ public class Parser
 		{
 			Node rhs = term();
 			// do the type checking for expression
-			TypeChecker.expressionCheck(lhs, rhs, op, sym);
+			checker.expressionCheck(lhs, rhs, op, sym);
 			op = scanner.getToken();
 		}
 		exitRule(NonTerminal.EXPRESSION);
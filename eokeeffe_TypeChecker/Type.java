@@ -1,53 +1,87 @@
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+/**
+ * The types of the language. Types are hash-consed: the factory methods
+ * return the one instance of each type, so two types are equal exactly
+ * when they are the same object and can be compared with ==. Each type
+ * also knows its array arity and the primitive type at the bottom of it.
+ */
 public class Type {
 
-  private static final Type INT = new PrimitiveType("int");
-  private static final Type CHAR = new PrimitiveType("char");
-  private static final Type STRING = new PrimitiveType("string");
-  private static final Type VOID = new PrimitiveType("void");
+  private static final ConcurrentMap<String, Type> PRIMITIVES = new ConcurrentHashMap<String, Type>();
 
-  private Type() {}
+  private static final Type INT = newPrimitiveType("int");
+  private static final Type CHAR = newPrimitiveType("char");
+  private static final Type STRING = newPrimitiveType("string");
+  private static final Type VOID = newPrimitiveType("void");
 
+  // the number of array levels, 0 for a primitive type
+  private final int arity;
+  // the primitive type under every array level, this for a primitive type
+  private final Type elementType;
+  // the array types of this base type, by dimension
+  private final ConcurrentMap<Integer, ArrayType> arrayTypes = new ConcurrentHashMap<Integer, ArrayType>();
+
+  private Type(int arity, Type elementType) {
+    this.arity = arity;
+    this.elementType = elementType == null ? this : elementType;
+  }
+
+  // Returns the built-in primitive type called typeString, or null
   public static Type getType(String typeString)
   {
-	  if(typeString.equals(Type.INT))
+	  if(typeString.equals(Type.INT.toString()))
 	  {
 		  return Type.INT;
 	  }
-	  else if(typeString.equals(Type.CHAR))
+	  else if(typeString.equals(Type.CHAR.toString()))
 	  {
 		  return Type.CHAR;
-	  } 
-	  else if(typeString.equals(Type.STRING))
+	  }
+	  else if(typeString.equals(Type.STRING.toString()))
 	  {
 		  return Type.STRING;
 	  }
-	  else if(typeString.equals(Type.VOID))
+	  else if(typeString.equals(Type.VOID.toString()))
 	  {
 		  return Type.VOID;
 	  }
 	  return null;
   }
-  
+
   public static Type newPrimitiveType(String typeName) {
-    Type res;
-    if (typeName.equals("int")){ res = INT;}
-    else if (typeName.equals("char")) {res = CHAR;}
-    else if (typeName.equals("string")) {res = STRING;}
-    else if (typeName.equals("void")) {res = VOID;}
-    else {res = new PrimitiveType(typeName);}
+    Type res = PRIMITIVES.get(typeName);
+    if (res == null) {
+      res = PRIMITIVES.computeIfAbsent(typeName, PrimitiveType::new);
+    }
     return res;
   }
 
   public static Type newArrayType(Type baseType, int dimension) {
-    return new ArrayType(baseType, dimension);
+    ArrayType res = baseType.arrayTypes.get(dimension);
+    if (res == null) {
+      res = baseType.arrayTypes.computeIfAbsent(dimension, d -> new ArrayType(baseType, d));
+    }
+    return res;
+  }
+
+  // the number of array levels, 0 for a primitive type
+  public int getArity() {
+    return arity;
+  }
+
+  // the primitive type under every array level, or this type if it is one
+  public Type getElementType() {
+    return elementType;
   }
 
   // ---------- PrimitiveType static inner class ----------
   	public  static class PrimitiveType extends Type {
     private String name;
 
-    public PrimitiveType(String name) {
+    private PrimitiveType(String name) {
+      super(0, null);
       this.name = name;
     }
 
@@ -61,10 +95,13 @@ public class Type {
   	public static class ArrayType extends Type {
     private Type baseType;
     private int dimension;
+    private String name;
 
-    public ArrayType(Type baseType, int dimension) {
+    private ArrayType(Type baseType, int dimension) {
+      super(baseType.getArity() + 1, baseType.getElementType());
       this.baseType = baseType;
       this.dimension = dimension;
+      this.name = "array " + dimension + " of " + baseType.toString();
     }
     public Type getBaseType()
     {
@@ -76,8 +113,8 @@ public class Type {
     }
     @Override
     public String toString() {
-      return "array " + dimension + " of " + baseType.toString();
+      return name;
     }
   }
-  
+
  }
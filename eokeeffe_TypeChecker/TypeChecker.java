@@ -6,8 +6,13 @@ import src.Parser.ErrorType;
 
 public class TypeChecker
 {
-	public TypeChecker()
-	{}
+	// the parser being checked, which reports the errors
+	private Parser parser;
+
+	public TypeChecker(Parser parser)
+	{
+		this.parser = parser;
+	}
 
 	// ---------- Type Instance methods ----------------/
 	// Check the instance is what is being looked for //
@@ -44,13 +49,9 @@ public class TypeChecker
 	public static Type getArrayBaseType(Type t)
 	{
 		/**
-		 * Iteratively move down the base types
+		 * The primitive type under every array level, cached in the type
 		 */
-		while (!primInstance(t))
-		{
-			t = ((Type.ArrayType) t).getBaseType();
-		}
-		return t;
+		return t.getElementType();
 	}
 
 	public static Type arrayBase(Type t)
@@ -61,17 +62,9 @@ public class TypeChecker
 	public int getArrayArity(Type t)
 	{
 		/**
-		 * While the type is not a primitive get to the base type and count the
-		 * number of levels there are , this is the arity
+		 * The number of array levels, cached in the type
 		 */
-		int arity = 0;
-		do
-		{
-			arity++;
-			t = ((Type.ArrayType) t).getBaseType();
-		}
-		while (!primInstance(t));
-		return arity;
+		return t.getArity();
 	}
 
 	// ---------- Type Check methods ----------------/
@@ -80,12 +73,12 @@ public class TypeChecker
 	{
 		if(arrayInstance(lhs.getType()) && !intInstance(rhs.getType()))
 		{
-			Parser.printError(ErrorType.MISMATCH_ERROR, ident, Parser.ERR_MISMATCH_INVALID_REF + "base = "
+			parser.printError(ErrorType.MISMATCH_ERROR, ident, Parser.ERR_MISMATCH_INVALID_REF + "base = "
 					+ arrayBase(lhs.getType()) + ", index = " + rhs.getType());
 		}
 		else if(!arrayInstance(lhs.getType()))
 		{
-			Parser.printError(ErrorType.MISMATCH_ERROR, ident,
+			parser.printError(ErrorType.MISMATCH_ERROR, ident,
 					Parser.ERR_MISMATCH_INVALID_REF + "base = " + lhs.getType() + ", index = " + rhs.getType());
 		}
 		else
@@ -95,7 +88,7 @@ public class TypeChecker
 		return arity;
 	}
 
-	public static void assignementExprCheck(Node lhs, Token op, Node rhs) throws ParserException
+	public void assignementExprCheck(Node lhs, Token op, Node rhs) throws ParserException
 	{
 		checkForArrayError(1, lhs, rhs, op);
 		if((lhs.getType() != rhs.getType()))
@@ -104,30 +97,30 @@ public class TypeChecker
 			{
 				// this is the deep string search , so if a string is in there
 				// somewhere then we can find it
-				if(!Parser.stringPresent)
+				if(!parser.stringPresent)
 				{
-					Parser.printError(ErrorType.MISMATCH_ERROR, op, Parser.ERR_MISMATCH_INVALID_ASSIGN + lhs.getType()
+					parser.printError(ErrorType.MISMATCH_ERROR, op, Parser.ERR_MISMATCH_INVALID_ASSIGN + lhs.getType()
 							+ " <- " + rhs.getType());
 				}
 			}
 			else
 			{
-				Parser.printError(ErrorType.MISMATCH_ERROR, op, Parser.ERR_MISMATCH_INVALID_ASSIGN + lhs.getType()
+				parser.printError(ErrorType.MISMATCH_ERROR, op, Parser.ERR_MISMATCH_INVALID_ASSIGN + lhs.getType()
 						+ " <- " + rhs.getType());
 			}
 		}
 	}
 
-	public static void assignementLiteralCheck(Node lhs, Token op) throws ParserException
+	public void assignementLiteralCheck(Node lhs, Token op) throws ParserException
 	{
 		if(!TypeChecker.stringInstance(lhs.getType()))
 		{
-			Parser.printError(ErrorType.MISMATCH_ERROR, op, Parser.ERR_MISMATCH_INVALID_ASSIGN + " " + lhs.getType()
+			parser.printError(ErrorType.MISMATCH_ERROR, op, Parser.ERR_MISMATCH_INVALID_ASSIGN + " " + lhs.getType()
 					+ " <- " + Type.newPrimitiveType("string"));
 		}
 	}
 
-	public static void termCheck(Node lhs, Node rhs, Token op) throws ParserException
+	public void termCheck(Node lhs, Node rhs, Token op) throws ParserException
 	{
 		/**
 		 * int and char instances can be multiplied by each other , but not with
@@ -136,12 +129,12 @@ public class TypeChecker
 		checkForArrayError(0, lhs, rhs, op);
 		if(!(TypeChecker.intInstance(lhs.getType()) && TypeChecker.intInstance(rhs.getType())))
 		{
-			Parser.printError(ErrorType.MISMATCH_ERROR, op, Parser.ERR_MISMATCH_INVALID_OP + op.getLexeme() + ", "
+			parser.printError(ErrorType.MISMATCH_ERROR, op, Parser.ERR_MISMATCH_INVALID_OP + op.getLexeme() + ", "
 					+ lhs.getType() + ", " + rhs.getType());
 		}
 	}
 
-	public static void expressionCheck(Node lhs, Node rhs, Token op, Token sym) throws ParserException
+	public void expressionCheck(Node lhs, Node rhs, Token op, Token sym) throws ParserException
 	{
 		/**
 		 * So anything can be added with a string, apart from that make sure the
@@ -150,36 +143,36 @@ public class TypeChecker
 		checkForArrayError(0, lhs, rhs, op);
 		if(stringInstance(lhs.getType()) || stringInstance(rhs.getType()))
 		{
-			Parser.stringPresent = true;// set the deep string flag , so if a
+			parser.stringPresent = true;// set the deep string flag , so if a
 			// string is somewhere in a long expression , the whole expression
 			// becomes a string
 			return;
 		}
 		else if(lhs.getType() != rhs.getType())
 		{
-			Parser.printError(ErrorType.MISMATCH_ERROR, op, Parser.ERR_MISMATCH_INVALID_OP + op.getLexeme() + ", "
+			parser.printError(ErrorType.MISMATCH_ERROR, op, Parser.ERR_MISMATCH_INVALID_OP + op.getLexeme() + ", "
 					+ lhs.getType() + ", " + rhs.getType());
 		}
 	}
 
-	public static void conditionCheck(Node lhs, Token op, Node rhs) throws ParserException
+	public void conditionCheck(Node lhs, Token op, Node rhs) throws ParserException
 	{
 		/**
 		 * Check whether we are comparing an array first (error) then simply
 		 * check if the 2 sides are of the same type
 		 */
 		checkForArrayError(0, lhs, rhs, op);
-		if(Parser.stringPresent)
+		if(parser.stringPresent)
 		{
 			if(!stringInstance(lhs.getType()))
 			{
-				Parser.printError(ErrorType.MISMATCH_ERROR, op, Parser.ERR_MISMATCH_INVALID_OP + op.getLexeme() + ", "
+				parser.printError(ErrorType.MISMATCH_ERROR, op, Parser.ERR_MISMATCH_INVALID_OP + op.getLexeme() + ", "
 						+ lhs.getType() + ", " + Type.newPrimitiveType("string"));
 			}
 		}
 		else if(lhs.getType() != rhs.getType())
 		{
-			Parser.printError(ErrorType.MISMATCH_ERROR, op, Parser.ERR_MISMATCH_INVALID_OP + op.getLexeme() + ", "
+			parser.printError(ErrorType.MISMATCH_ERROR, op, Parser.ERR_MISMATCH_INVALID_OP + op.getLexeme() + ", "
 					+ lhs.getType() + ", " + rhs.getType());
 		}
 	}
@@ -188,15 +181,15 @@ public class TypeChecker
 	{
 		do
 		{
-			Token ident = Parser.expectRetrieve(TokenKind.IDENT);
-			Symbol c = Parser.tryResolveSymbol(ident, Symbol.Kind.VAR);
+			Token ident = parser.expectRetrieve(TokenKind.IDENT);
+			Symbol c = parser.tryResolveSymbol(ident, Symbol.Kind.VAR);
 			if(arrayInstance(c.getType()))
 			{
-				Parser.printError(ErrorType.MISMATCH_ERROR, Parser.sym, Parser.ERR_MISMATCH_INVALID_ARG + c.getName()
+				parser.printError(ErrorType.MISMATCH_ERROR, parser.sym, Parser.ERR_MISMATCH_INVALID_ARG + c.getName()
 						+ ", " + c.getType());
 			}
 		}
-		while (Parser.accept(TokenKind.COMMA));
+		while (parser.accept(TokenKind.COMMA));
 	}
 
 	public void funcCheck(Symbol proc, ArrayList<Symbol> args) throws ParserException
@@ -216,11 +209,11 @@ public class TypeChecker
 		boolean isCorrect = true;
 		do
 		{
-			Token ident = Parser.expectRetrieve(TokenKind.IDENT);
-			Symbol givenArg = Parser.tryResolveSymbol(ident, Symbol.Kind.VAR);
+			Token ident = parser.expectRetrieve(TokenKind.IDENT);
+			Symbol givenArg = parser.tryResolveSymbol(ident, Symbol.Kind.VAR);
 			if(arrayInstance(givenArg.getType()))
 			{
-				Parser.printError(ErrorType.MISMATCH_ERROR, Parser.sym,
+				parser.printError(ErrorType.MISMATCH_ERROR, parser.sym,
 						Parser.ERR_MISMATCH_INVALID_ARG + givenArg.getName() + ", " + givenArg.getType());
 			}
 			else
@@ -236,7 +229,7 @@ public class TypeChecker
 				}
 			}
 		}
-		while (Parser.accept(TokenKind.COMMA));
+		while (parser.accept(TokenKind.COMMA));
 		if(!isCorrect || (args.size() != givenArgs.size()))
 		{
 			String pattern = proc.getName() + "(";
@@ -266,18 +259,18 @@ public class TypeChecker
 			// " with "+ pattern2);
 			if(args.size() != givenArgs.size())
 			{
-				Parser.printError(ErrorType.ARITY_ERROR, Parser.sym, Parser.ERR_MISMATCH_INVALID_CALL + pattern
+				parser.printError(ErrorType.ARITY_ERROR, parser.sym, Parser.ERR_MISMATCH_INVALID_CALL + pattern
 						+ " with " + pattern2);
 			}
 			else
 			{
-				Parser.printError(ErrorType.MISMATCH_ERROR, Parser.sym, Parser.ERR_MISMATCH_INVALID_CALL + pattern
+				parser.printError(ErrorType.MISMATCH_ERROR, parser.sym, Parser.ERR_MISMATCH_INVALID_CALL + pattern
 						+ " with " + pattern2);
 			}
 		}
 	}
 
-	public static void returnCheck(Symbol func, Node expr) throws ParserException
+	public void returnCheck(Symbol func, Node expr) throws ParserException
 	{
 		/**
 		 * if func is null then its the main function that is being compared to
@@ -285,20 +278,20 @@ public class TypeChecker
 		 */
 		if(func == null)
 		{
-			if(!expr.getType().equals("void"))
+			if(expr.getType() != Type.newPrimitiveType("void"))
 			{
-				Parser.printError(ErrorType.MISMATCH_ERROR, Parser.sym, Parser.ERR_MISMATCH_INVALID_RET + "expected = "
+				parser.printError(ErrorType.MISMATCH_ERROR, parser.sym, Parser.ERR_MISMATCH_INVALID_RET + "expected = "
 						+ Type.newPrimitiveType("void") + ", received = " + expr.getType());
 			}
 		}
 		else if(func.getType() != expr.getType())
 		{
-			Parser.printError(ErrorType.MISMATCH_ERROR, Parser.sym, Parser.ERR_MISMATCH_INVALID_RET + "expected = "
+			parser.printError(ErrorType.MISMATCH_ERROR, parser.sym, Parser.ERR_MISMATCH_INVALID_RET + "expected = "
 					+ func.getType() + ", received = " + expr.getType());
 		}
 	}
 
-	public static void checkForArrayError(int Check, Node lhs, Node rhs, Token op) throws ParserException
+	public void checkForArrayError(int Check, Node lhs, Node rhs, Token op) throws ParserException
 	{
 		/**
 		 * Check for any instances of an array type here
@@ -310,16 +303,16 @@ public class TypeChecker
 			{
 				if(arrayInstance(rhs.getType()))
 				{
-					Parser.printError(ErrorType.MISMATCH_ERROR, op, MM);
+					parser.printError(ErrorType.MISMATCH_ERROR, op, MM);
 				}
 				else
 				{
-					Parser.printError(ErrorType.MISMATCH_ERROR, op, MM);
+					parser.printError(ErrorType.MISMATCH_ERROR, op, MM);
 				}
 			}
 			else if(arrayInstance(rhs.getType()))
 			{
-				Parser.printError(ErrorType.MISMATCH_ERROR, op, MM);
+				parser.printError(ErrorType.MISMATCH_ERROR, op, MM);
 			}
 		}
 		else if(Check == 1)
@@ -328,7 +321,7 @@ public class TypeChecker
 			{
 				if(arrayInstance(rhs.getType()))
 				{
-					Parser.printError(
+					parser.printError(
 							ErrorType.MISMATCH_ERROR,
 							op,
 							Parser.ERR_MISMATCH_INVALID_ASSIGN + arrayBase(lhs.getType()) + " <- "
@@ -336,7 +329,7 @@ public class TypeChecker
 				}
 				else
 				{
-					Parser.printError(
+					parser.printError(
 							ErrorType.MISMATCH_ERROR,
 							op,
 							Parser.ERR_MISMATCH_INVALID_ASSIGN + arrayBase(lhs.getType()) + " <- "
@@ -345,7 +338,7 @@ public class TypeChecker
 			}
 			else if(arrayInstance(rhs.getType()))
 			{
-				Parser.printError(ErrorType.MISMATCH_ERROR, op, Parser.ERR_MISMATCH_INVALID_ASSIGN + lhs.getType()
+				parser.printError(ErrorType.MISMATCH_ERROR, op, Parser.ERR_MISMATCH_INVALID_ASSIGN + lhs.getType()
 						+ " <- " + arrayBase(rhs.getType()));
 			}
 		}
@@ -1,6 +1,8 @@
 package src;
 
-import java.util.LinkedHashMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Stack;
 
@@ -13,8 +15,11 @@ public class SymbolTable
 {
 	/* parent scope of current table */
 	private SymbolTable parent;
-	/* symbols and names in current scope */
-	private Map<String, Symbol> table;
+	/* symbols in current scope, in the order they were added */
+	private List<Symbol> symbols;
+	/* names in current scope, procedures in a namespace of their own */
+	private Map<String, Symbol> procedures;
+	private Map<String, Symbol> variables;
 	/* for getting the scope depth */
 	private int recursiondepth;
 
@@ -29,7 +34,7 @@ public class SymbolTable
 		// set the parent to the callers object
 		this.parent = null;
 		// define a new scope for variables
-		this.table = new LinkedHashMap<String, Symbol>();
+		newTable();
 	}
 
 	public SymbolTable(int recursiondepth)
@@ -46,7 +51,14 @@ public class SymbolTable
 		 */
 		this(parent.recursiondepth + 1);
 		this.parent = parent;
-		this.table = new LinkedHashMap<String, Symbol>();
+		newTable();
+	}
+
+	private void newTable()
+	{
+		this.symbols = new ArrayList<Symbol>();
+		this.procedures = new HashMap<String, Symbol>();
+		this.variables = new HashMap<String, Symbol>();
 	}
 
 	public boolean addSymbol(Symbol s)
@@ -56,10 +68,11 @@ public class SymbolTable
 		 * Returns true on success or false if the symbol already exists in the
 		 * table.
 		 */
-		String realname = safeName(s.getName(), s.getKind());
-		Symbol symbol = table.get(realname);
+		Map<String, Symbol> namespace = namespace(s.getKind());
+		Symbol symbol = namespace.get(s.getName());
 		if(symbol != null) { return false; }
-		table.put(realname, s);
+		namespace.put(s.getName(), s);
+		symbols.add(s);
 		return true;
 	}
 
@@ -70,13 +83,12 @@ public class SymbolTable
 		 * Returns the symbol with the given name and kind in the current scope,
 		 * or null if such a symbol does not exist.
 		 */
-		String sname = safeName(name, kind);
 		SymbolTable p = this;
 		while (p != null)
 		{
-			if(p.table.get(sname) != null)
+			Symbol temp = p.namespace(kind).get(name);
+			if(temp != null)
 			{
-				Symbol temp = p.table.get(sname);
 				return temp;
 			}
 			p = p.getParent();
@@ -148,7 +160,7 @@ public class SymbolTable
 				indent += arrow;
 			}
 			// append the scoping arrows
-			for (Symbol s : p.table.values())
+			for (Symbol s : p.symbols)
 			{
 				res.append(indent + s.toString() + "\n");
 			}
@@ -158,21 +170,21 @@ public class SymbolTable
 		return res.toString();
 	}
 
-	private String safeName(String string, Kind kind)
+	private Map<String, Symbol> namespace(Kind kind)
 	{
 		/**
-		 * For safe searching of symbols in the table we need to make sure
-		 * symbols are properly identified so if a symbol has both a
-		 * procedure/var we need to have a better key to search for
+		 * A symbol can be both a procedure and a var, so procedures are kept
+		 * apart from every other kind of symbol. The name alone is the key,
+		 * so no String is built per lookup
 		 */
 
 		if(kind == Symbol.Kind.PROCEDURE)
 		{
-			return string + "::procedure";// if symbol is a procedure
+			return procedures;// if symbol is a procedure
 		}
 		else
 		{
-			return string + "::var";// if symbol is anything but a procedure
+			return variables;// if symbol is anything but a procedure
 		}
 	}
 }